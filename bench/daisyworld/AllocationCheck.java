@@ -0,0 +1,149 @@
+package daisyworld;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Regression check for the headless step loop: once warmed up, a step (with metrics and output, as in
+// HeadlessSimulation) must not allocate. Counts the bytes allocated by the stepping thread and the
+// scheduler's workers over a number of steps, for each engine configuration, and exits with status 1
+// if any of them allocated at all.
+//
+// The JVM allocates on the stepping thread too while the code warms up: when a method is first queued
+// for C2 it resolves the string constants of the method's class on the thread that asked, and those
+// methods are shared by every configuration. So every configuration is warmed up once before any is
+// measured, which leaves no configuration to take these bytes for the whole run. What remains is once
+// per run, such as the node an output queue's lock allocates the first time it is contended, so the
+// steps are measured ROUNDS times and the quietest round counts, whereas anything the step loop
+// allocates, every step or every so many, shows up in every round.
+//
+// Usage: java -cp target/benchmarks.jar daisyworld.AllocationCheck [--steps N] [--warmup N] [--size N]
+// (add --add-modules jdk.incubator.vector to cover the vector kernel as well)
+public class AllocationCheck {
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int steps = 1000;
+        int warmup = 2000;
+        int size = 256;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--steps":
+                    steps = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--size":
+                    size = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.err.println("Usage: java daisyworld.AllocationCheck [--steps N] [--warmup N] [--size N]");
+                    System.exit(1);
+            }
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.err.println("This JVM cannot count allocated bytes per thread");
+            System.exit(1);
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Path dir = Files.createTempDirectory("daisyworld-alloc");
+        boolean failed = false;
+        int parallelism = Math.max(2, Runtime.getRuntime().availableProcessors());
+        for (int rounds : new int[]{0, ROUNDS}) { // A warm-up pass over every configuration, then the measured one
+            for (String kernel : new String[]{"scalar", "vector"}) {
+                for (String storage : new String[]{"heap", "active-set", "off-heap"}) {
+                    if (kernel.equals("vector") && storage.equals("off-heap")) continue; // Needs the on-heap grid
+                    for (int threadCount : new int[]{1, parallelism}) {
+                        for (Boundary boundary : Boundary.values()) {
+                            for (String format : new String[]{"csv", "binary"}) {
+                                String name = kernel + ' ' + storage + " threads=" + threadCount + ' ' + boundary + ' ' + format;
+                                SimulationConfig config = new SimulationConfig();
+                                config.rows = size;
+                                config.cols = size;
+                                config.solarLuminosity = 1.0;
+                                config.luminositySchedule = LuminositySchedule.ramp(0.8, 1.2, warmup + ROUNDS * steps);
+                                config.seed = 1;
+                                config.boundary = boundary;
+                                config.activeSet = storage.equals("active-set");
+                                config.offHeap = storage.equals("off-heap");
+                                double bytesPerStep = measure(threads, config, threadCount, kernel, format,
+                                        dir.resolve("trajectory").toString(), warmup, steps, rounds);
+                                if (rounds == 0) continue;
+                                System.out.printf("%-48s %10.3f bytes/step%n", name, bytesPerStep);
+                                if (bytesPerStep > 0) failed = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+        }
+        Files.delete(dir);
+        if (failed) {
+            System.err.println("The step loop allocates");
+            System.exit(1);
+        }
+    }
+
+    private static double measure(com.sun.management.ThreadMXBean threads, SimulationConfig config, int threadCount,
+                                  String kernel, String format, String output, int warmup, int steps, int rounds) {
+        try (StepScheduler scheduler = new StepScheduler(threadCount)) {
+            GridEngine engine = new GridEngine(config, scheduler,
+                    kernel.equals("vector") ? TemperatureKernel.vector() : TemperatureKernel.SCALAR);
+            TrajectorySink sink = HeadlessSimulation.createSink(format, output, 100);
+            SimulationMetrics metrics = new SimulationMetrics(scheduler, sink);
+            engine.setup();
+            sink.writeHeader(engine);
+            sink.writeStep(0, engine);
+            for (int i = 0; i < warmup; i++) step(engine, sink, metrics, i);
+
+            long[] ids = stepThreadIds();
+            long[] before = new long[ids.length];
+            long least = Long.MAX_VALUE;
+            for (int round = 0, i = warmup; round < rounds; round++) {
+                for (int t = 0; t < ids.length; t++) before[t] = threads.getThreadAllocatedBytes(ids[t]);
+                for (int end = i + steps; i < end; i++) step(engine, sink, metrics, i);
+                long allocated = 0;
+                for (int t = 0; t < ids.length; t++) {
+                    // One thread at a time, since the array form allocates its result on this thread
+                    long after = threads.getThreadAllocatedBytes(ids[t]);
+                    if (before[t] >= 0 && after >= 0) allocated += after - before[t]; // -1 once a thread is gone
+                }
+                least = Math.min(least, allocated);
+            }
+
+            sink.close();
+            metrics.close();
+            return (double) least / steps;
+        }
+    }
+
+    // The body of HeadlessSimulation's step loop, without the console log
+    private static void step(GridEngine engine, TrajectorySink sink, SimulationMetrics metrics, int i) {
+        engine.step();
+        metrics.recordStep(engine);
+        long outputStart = System.nanoTime();
+        sink.writeStep(i + 1, engine);
+        metrics.recordOutput(System.nanoTime() - outputStart);
+    }
+
+    // The calling thread and the scheduler's workers
+    private static long[] stepThreadIds() {
+        List<Long> ids = new ArrayList<>();
+        ids.add(Thread.currentThread().getId());
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().startsWith("step-worker-")) ids.add(t.getId());
+        }
+        long[] result = new long[ids.size()];
+        for (int i = 0; i < result.length; i++) result[i] = ids.get(i);
+        return result;
+    }
+}
@@ -0,0 +1,129 @@
+package daisyworld;
+
+// Regression check for the exact-equality guarantees of the grid engine: the thread count, the kernel
+// (scalar or vector), the breeding scan (dense or active set) and the storage (heap or off-heap) must not
+// change a single bit of a run, on closed and toroidal grids alike. Runs every combination on a few small
+// grids, compares each trajectory (global temperature and daisy counts of every step) and the final grid
+// with the single-threaded scalar dense on-heap run, and exits with status 1 on the first mismatch of each.
+//
+// Usage: java -cp target/benchmarks.jar daisyworld.EquivalenceCheck [--steps N]
+// (add --add-modules jdk.incubator.vector to cover the vector kernel as well)
+public class EquivalenceCheck {
+    // Several row tiles each, with column counts that leave a tail after the last full vector
+    private static final int[][] SHAPES = {{257, 203}, {600, 37}, {9, 5}};
+
+    public static void main(String[] args) {
+        int steps = 150;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--steps")) {
+                steps = Integer.parseInt(args[++i]);
+            } else {
+                System.err.println("Usage: java daisyworld.EquivalenceCheck [--steps N]");
+                System.exit(1);
+            }
+        }
+        int parallelism = Math.max(3, Runtime.getRuntime().availableProcessors());
+        boolean failed = false;
+        for (int[] shape : SHAPES) {
+            for (Boundary boundary : Boundary.values()) {
+                SimulationConfig config = new SimulationConfig();
+                config.rows = shape[0];
+                config.cols = shape[1];
+                config.boundary = boundary;
+                config.luminositySchedule = LuminositySchedule.ramp(0.7, 1.3, steps);
+                config.seed = 11;
+                Trajectory reference = run(config, "scalar", "heap", 1, steps);
+                for (String kernel : new String[]{"scalar", "vector"}) {
+                    for (String storage : new String[]{"heap", "active-set", "off-heap"}) {
+                        if (kernel.equals("vector") && storage.equals("off-heap")) continue; // Needs the on-heap grid
+                        for (int threads : new int[]{1, parallelism}) {
+                            String name = shape[0] + "x" + shape[1] + ' ' + boundary + ' ' + kernel + ' ' + storage
+                                    + " threads=" + threads;
+                            String mismatch = reference.compare(run(config, kernel, storage, threads, steps));
+                            System.out.printf("%-44s %s%n", name, mismatch == null ? "identical" : mismatch);
+                            if (mismatch != null) failed = true;
+                        }
+                    }
+                }
+            }
+        }
+        if (failed) {
+            System.err.println("Runs that must be identical differ");
+            System.exit(1);
+        }
+    }
+
+    private static Trajectory run(SimulationConfig base, String kernel, String storage, int threads, int steps) {
+        SimulationConfig config = base.copy();
+        config.activeSet = storage.equals("active-set");
+        config.offHeap = storage.equals("off-heap");
+        try (StepScheduler scheduler = new StepScheduler(threads)) {
+            GridEngine engine = new GridEngine(config, scheduler,
+                    kernel.equals("vector") ? TemperatureKernel.vector() : TemperatureKernel.SCALAR);
+            Trajectory trajectory = new Trajectory(config, steps);
+            engine.setup();
+            trajectory.record(0, engine);
+            for (int step = 1; step <= steps; step++) {
+                engine.step();
+                trajectory.record(step, engine);
+            }
+            trajectory.recordGrid(engine);
+            return trajectory;
+        }
+    }
+
+    // What a run produced: per-step aggregates and the final grid
+    private static final class Trajectory {
+        final double[] temperature;
+        final int[] blacks;
+        final int[] whites;
+        final double[] gridTemperature;
+        final int[] gridColor;
+        final int[] gridAge;
+        final int cols;
+
+        Trajectory(SimulationConfig config, int steps) {
+            temperature = new double[steps + 1];
+            blacks = new int[steps + 1];
+            whites = new int[steps + 1];
+            int size = config.rows * config.cols;
+            gridTemperature = new double[size];
+            gridColor = new int[size];
+            gridAge = new int[size];
+            cols = config.cols;
+        }
+
+        void record(int step, Simulation engine) {
+            temperature[step] = engine.getGlobalTemperature();
+            blacks[step] = engine.getBlackDaisies();
+            whites[step] = engine.getWhiteDaisies();
+        }
+
+        void recordGrid(Simulation engine) {
+            for (int i = 0; i < gridTemperature.length; i++) {
+                gridTemperature[i] = engine.getTemperature(i / cols, i % cols);
+                gridColor[i] = engine.getDaisyColor(i / cols, i % cols);
+                gridAge[i] = engine.getDaisyAge(i / cols, i % cols);
+            }
+        }
+
+        // First difference from other, null if there is none. Temperatures compare bit for bit.
+        String compare(Trajectory other) {
+            for (int step = 0; step < temperature.length; step++) {
+                if (Double.doubleToRawLongBits(temperature[step]) != Double.doubleToRawLongBits(other.temperature[step])
+                        || blacks[step] != other.blacks[step] || whites[step] != other.whites[step])
+                    return String.format("step %d: temperature %s vs %s, blacks %d vs %d, whites %d vs %d", step,
+                            temperature[step], other.temperature[step], blacks[step], other.blacks[step],
+                            whites[step], other.whites[step]);
+            }
+            for (int i = 0; i < gridTemperature.length; i++) {
+                if (Double.doubleToRawLongBits(gridTemperature[i]) != Double.doubleToRawLongBits(other.gridTemperature[i])
+                        || gridColor[i] != other.gridColor[i] || gridAge[i] != other.gridAge[i])
+                    return String.format("final grid at row %d col %d: temperature %s vs %s, color %d vs %d, age %d vs %d",
+                            i / cols, i % cols, gridTemperature[i], other.gridTemperature[i], gridColor[i],
+                            other.gridColor[i], gridAge[i], other.gridAge[i]);
+            }
+            return null;
+        }
+    }
+}
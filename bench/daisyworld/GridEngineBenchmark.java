@@ -0,0 +1,112 @@
+package daisyworld;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Full step and each of its phases on the grid engine. Every invocation starts from the same settled grid,
+// one step further on, so the phases that mutate the grid (or, for breeding, draw from the step's key) do not
+// drift away from the state being measured or replay the same draws.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GridEngineBenchmark {
+    @Param({"30", "256", "1024", "4096"})
+    public int gridSize;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"20"})
+    public int percentageOfBlacks;
+
+    @Param({"20"})
+    public int percentageOfWhites;
+
+    @Param({"false", "true"})
+    public boolean activeSet;
+
+    @Param({"scalar", "vector"})
+    public String kernel;
+
+    @Param({"closed"})
+    public String boundary;
+
+    private StepScheduler scheduler;
+    private GridEngine engine;
+    private Checkpoint settled;
+    private int invocations;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SimulationConfig config = new SimulationConfig();
+        config.rows = gridSize;
+        config.cols = gridSize;
+        config.solarLuminosity = 1.0;
+        config.percentageOfBlacks = percentageOfBlacks;
+        config.percentageOfWhites = percentageOfWhites;
+        config.seed = 1;
+        config.activeSet = activeSet;
+        config.boundary = Boundary.parse(boundary);
+        TemperatureKernel temperatureKernel = kernel.equals("vector") ? TemperatureKernel.vector() : TemperatureKernel.SCALAR;
+        if (kernel.equals("vector") && temperatureKernel == TemperatureKernel.SCALAR)
+            throw new IllegalStateException("kernel=vector needs a -Pvector build and --add-modules jdk.incubator.vector");
+        scheduler = new StepScheduler(threads);
+        engine = new GridEngine(config, scheduler, temperatureKernel);
+        engine.setup();
+        for (int i = 0; i < 100; i++) engine.step(); // Start from a settled population
+        settled = Checkpoint.capture(engine, null);
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        settled.restore(engine);
+        engine.resume(settled.getStep() + ++invocations); // Advance the step key
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduler.close();
+    }
+
+    @Benchmark
+    public void step() {
+        engine.step();
+    }
+
+    @Benchmark
+    public void heating() {
+        engine.calculateTemperature(engine.getNumSteps() + 1);
+    }
+
+    @Benchmark
+    public void diffusion() {
+        engine.diffuse();
+    }
+
+    @Benchmark
+    public void breeding() {
+        engine.breed();
+    }
+
+    @Benchmark
+    public double aggregation() {
+        engine.updateGlobalTemperature();
+        return engine.getGlobalTemperature();
+    }
+}
@@ -0,0 +1,84 @@
+package daisyworld;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// The Patch and Daisy methods of the object engine, as the baseline for the grid engine
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectEngineBenchmark {
+    @Param({"30", "256"})
+    public int gridSize;
+
+    @Param({"20"})
+    public int percentageOfBlacks;
+
+    @Param({"20"})
+    public int percentageOfWhites;
+
+    private SimulationEngine engine;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SimulationConfig config = new SimulationConfig();
+        config.rows = gridSize;
+        config.cols = gridSize;
+        config.solarLuminosity = 1.0;
+        config.percentageOfBlacks = percentageOfBlacks;
+        config.percentageOfWhites = percentageOfWhites;
+        config.seed = 1;
+        engine = new SimulationEngine(config);
+        engine.setup();
+        for (int i = 0; i < 100; i++) engine.step();
+    }
+
+    @Benchmark
+    public void step() {
+        engine.step();
+    }
+
+    @Benchmark
+    public void patchCalculateTemperature() {
+        double luminosity = engine.getConfig().solarLuminosity;
+        for (int row = 0; row < engine.getRows(); row++) {
+            for (int col = 0; col < engine.getCols(); col++) {
+                engine.getPatch(row, col).calculateTemperature(luminosity);
+            }
+        }
+    }
+
+    @Benchmark
+    public void patchDiffuse() {
+        for (int row = 0; row < engine.getRows(); row++) {
+            for (int col = 0; col < engine.getCols(); col++) {
+                engine.getPatch(row, col).diffuse();
+            }
+        }
+    }
+
+    @Benchmark
+    public void daisyCheckSurvivability() {
+        for (int row = 0; row < engine.getRows(); row++) {
+            for (int col = 0; col < engine.getCols(); col++) {
+                Patch patch = engine.getPatch(row, col);
+                if (patch.hasDaisy()) patch.getDaisy().checkSurvivability();
+            }
+        }
+    }
+}
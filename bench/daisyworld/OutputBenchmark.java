@@ -0,0 +1,58 @@
+package daisyworld;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Cost of logging one step, as seen by the simulation thread
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputBenchmark {
+    @Param({"csv", "binary"})
+    public String format;
+
+    private File file;
+    private TrajectorySink sink;
+    private GridEngine engine;
+    private int step;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = File.createTempFile("daisyworld-bench", "." + format);
+        sink = HeadlessSimulation.createSink(format, file.getPath(), 0);
+        SimulationConfig config = new SimulationConfig();
+        config.seed = 1;
+        engine = new GridEngine(config);
+        engine.setup();
+        sink.writeHeader(engine);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sink.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public void writeStep() {
+        sink.writeStep(step++, engine);
+    }
+}
@@ -0,0 +1,105 @@
+package daisyworld;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+// Heating and diffusion in SIMD lanes with the incubating JDK Vector API. Tolerance against the scalar
+// kernel: none, results are bit-identical. The logarithm is never vectorised, it is computed once per
+// albedo in GridEngine.localHeating, and each lane then only does the same IEEE additions, multiplications
+// and division as the scalar loop, in the same order and without fused multiply-adds. Works on the arrays of
+// a Grid, so GridEngine only pairs it with the on-heap grid.
+final class VectorTemperatureKernel implements TemperatureKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    // Colors are loaded as bytes and widened, PARTS double vectors per byte vector
+    private static final VectorSpecies<Byte> BYTES =
+            VectorSpecies.of(byte.class, VectorShape.forBitSize(Math.max(64, LANES * Byte.SIZE)));
+    private static final int PARTS = BYTES.length() / LANES;
+
+    @Override
+    public void heat(GridStorage grid, double heatingSurface, double heatingBlack, double heatingWhite,
+                     int from, int to) {
+        double[] temperature = ((Grid) grid).temperature;
+        byte[] color = ((Grid) grid).color;
+        DoubleVector surface = DoubleVector.broadcast(SPECIES, heatingSurface);
+        DoubleVector black = DoubleVector.broadcast(SPECIES, heatingBlack);
+        DoubleVector white = DoubleVector.broadcast(SPECIES, heatingWhite);
+        int i = from;
+        for (int bound = to - BYTES.length(); i <= bound; i += BYTES.length()) {
+            ByteVector colors = ByteVector.fromArray(BYTES, color, i);
+            for (int part = 0; part < PARTS; part++) {
+                DoubleVector c = (DoubleVector) colors.convertShape(VectorOperators.B2D, SPECIES, part);
+                VectorMask<Double> isSurface = c.compare(VectorOperators.EQ, Grid.NONE);
+                VectorMask<Double> isBlack = c.compare(VectorOperators.EQ, Grid.BLACK);
+                DoubleVector heating = white.blend(black, isBlack).blend(surface, isSurface);
+                int j = i + part * LANES;
+                DoubleVector.fromArray(SPECIES, temperature, j).add(heating).div(2).intoArray(temperature, j);
+            }
+        }
+        for (; i < to; i++) {
+            double heating = color[i] == Grid.NONE ? heatingSurface : (color[i] == Grid.BLACK ? heatingBlack : heatingWhite);
+            temperature[i] = (temperature[i] + heating) / 2;
+        }
+    }
+
+    @Override
+    public void diffuse(GridStorage grid, double df, int fromRow, int toRow, TileHalos halos, int tile,
+                        double[] sums, int offset) {
+        Grid g = (Grid) grid;
+        // Narrow grids have no full vector between the edge columns
+        if (g.cols < LANES + 2) {
+            SCALAR.diffuse(grid, df, fromRow, toRow, halos, tile, sums, offset);
+            return;
+        }
+        diffuseRows(g.temperature, g.nextTemperature, g.cols, df, fromRow, toRow, halos, tile);
+        // Summed in index order while the tile is still in cache, so the totals match the scalar kernel
+        DiffusionKernel.sumRows(g.nextTemperature, g.color, fromRow * g.cols, toRow * g.cols, sums, offset);
+    }
+
+    private void diffuseRows(double[] src, double[] dst, int cols, double df, int fromRow, int toRow,
+                             TileHalos halos, int tile) {
+        double share = df / 4;
+        for (int row = fromRow; row < toRow; row++) {
+            int base = row * cols;
+            // The first and last row of the tile read their outer neighbours from the halos
+            double[] up = row == fromRow ? halos.above : src;
+            int upBase = row == fromRow ? halos.offset(tile) : base - cols;
+            double[] down = row == toRow - 1 ? halos.below : src;
+            int downBase = row == toRow - 1 ? halos.offset(tile) : base + cols;
+            int end = base + cols - 1;
+            dst[base] = DiffusionKernel.diffuseCell(src[base], up[upBase], down[downBase],
+                    halos.wrap ? src[end] : 0, src[base + 1], share, df);
+            // Built per row: hoisted out of the row loop, C2 keeps them as heap objects across the scalar
+            // paths and a step allocates them for every tile
+            DoubleVector shares = DoubleVector.broadcast(SPECIES, share);
+            DoubleVector dfs = DoubleVector.broadcast(SPECIES, df);
+            DoubleVector zero = DoubleVector.zero(SPECIES); // Start from +0 like the scalar sum
+            int col = 1;
+            for (int bound = cols - 1 - LANES; col <= bound; col += LANES) {
+                int i = base + col;
+                // Same order as the scalar kernel: up, down, left, right
+                DoubleVector received = zero
+                        .add(DoubleVector.fromArray(SPECIES, up, upBase + col).mul(shares))
+                        .add(DoubleVector.fromArray(SPECIES, down, downBase + col).mul(shares))
+                        .add(DoubleVector.fromArray(SPECIES, src, i - 1).mul(shares))
+                        .add(DoubleVector.fromArray(SPECIES, src, i + 1).mul(shares));
+                DoubleVector.fromArray(SPECIES, src, i).mul(dfs).add(received).intoArray(dst, i);
+            }
+            for (; col < cols - 1; col++) {
+                int i = base + col;
+                dst[i] = DiffusionKernel.diffuseCell(src[i], up[upBase + col], down[downBase + col], src[i - 1],
+                        src[i + 1], share, df);
+            }
+            dst[end] = DiffusionKernel.diffuseCell(src[end], up[upBase + cols - 1], down[downBase + cols - 1],
+                    src[end - 1], halos.wrap ? src[base] : 0, share, df);
+        }
+    }
+
+    @Override
+    public String name() {return "vector (" + LANES + " lanes)";}
+}
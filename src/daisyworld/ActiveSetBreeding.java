@@ -0,0 +1,111 @@
+package daisyworld;
+
+import java.util.Arrays;
+
+// Breeding over a compact list of the occupied patches, so its cost follows the population instead of the
+// grid area. Kept up to date as daisies are seeded and die. Gives exactly the same result as the dense
+// BreedingKernel passes: the same draw per patch and the same lowest-index-parent rule for conflicts.
+final class ActiveSetBreeding {
+    static final int CHUNK = 1 << 14; // Daisies per parallel chunk of the propose pass
+
+    private final Grid grid;
+    private final byte[] action;
+    private final Neighbours neighbours;
+    private final int[] claim; // Lowest-index parent seeding each patch this step, -1 if none
+    private int[] active = new int[CHUNK];
+    private int count = 0;
+    private int[] births = new int[CHUNK];
+    private int blacks = 0;
+    private int whites = 0;
+    private int deaths = 0; // Daisies that died in the last resolve
+
+    ActiveSetBreeding(Grid grid, Neighbours neighbours) {
+        this.grid = grid;
+        this.action = grid.action;
+        this.neighbours = neighbours;
+        this.claim = new int[grid.size()];
+        Arrays.fill(claim, -1);
+    }
+
+    // Rebuild the set from the grid, e.g. after seeding
+    void rebuild() {
+        count = 0;
+        blacks = 0;
+        whites = 0;
+        byte[] color = grid.color;
+        for (int i = 0; i < color.length; i++) {
+            if (color[i] == Grid.NONE) continue;
+            add(i);
+            if (color[i] == Grid.BLACK) blacks++;
+            else whites++;
+        }
+    }
+
+    int chunks() {
+        return (count + CHUNK - 1) / CHUNK;
+    }
+
+    // Propose pass for one chunk of the list. Only writes the age and action of the chunk's own patches.
+    void propose(int chunk, int maxAge, long stepKey) {
+        int cols = grid.cols;
+        int to = Math.min(count, (chunk + 1) * CHUNK);
+        for (int k = chunk * CHUNK; k < to; k++) {
+            int i = active[k];
+            int row = i / cols;
+            action[i] = BreedingKernel.proposeCell(grid, neighbours, maxAge, stepKey, i, row, i - row * cols);
+        }
+    }
+
+    // Apply deaths and births, in time proportional to the population. Runs on one thread.
+    void resolve() {
+        byte[] color = grid.color;
+        int n = count;
+        int kept = 0;
+        int numBirths = 0;
+        deaths = 0;
+        if (births.length < n) births = new int[Math.max(n, births.length * 2)];
+
+        for (int k = 0; k < n; k++) {
+            int i = active[k];
+            byte a = action[i];
+            if (a == BreedingKernel.DIE) {
+                if (color[i] == Grid.BLACK) blacks--;
+                else whites--;
+                grid.clearDaisy(i);
+                deaths++;
+                continue;
+            }
+            active[kept++] = i;
+            int t = neighbours.target(i, a);
+            if (t < 0) continue;
+            int parent = claim[t];
+            if (parent < 0) {
+                claim[t] = i;
+                births[numBirths++] = t;
+            } else if (i < parent) {
+                claim[t] = i;
+            }
+        }
+
+        count = kept;
+        for (int b = 0; b < numBirths; b++) {
+            int t = births[b];
+            byte c = color[claim[t]];
+            grid.setDaisy(t, c, 0);
+            claim[t] = -1;
+            add(t);
+            if (c == Grid.BLACK) blacks++;
+            else whites++;
+        }
+    }
+
+    private void add(int i) {
+        if (count == active.length) active = Arrays.copyOf(active, active.length * 2);
+        active[count++] = i;
+    }
+
+    int size() {return count;}
+    int getBlacks() {return blacks;}
+    int getWhites() {return whites;}
+    int getDeaths() {return deaths;}
+}
@@ -0,0 +1,280 @@
+package daisyworld;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Binary trajectory output: fixed-width little-endian records, so a reader can seek to any step.
+//
+// <path>       header (HEADER_BYTES): magic, version, rows, cols, snapshot interval, padding
+//              one RECORD_BYTES record per step: step, blacks, whites, padding (ints) then
+//              global temperature, luminosity, albedo black, albedo white, albedo surface (doubles)
+// <path>.grid  same header, then one snapshot every snapshotEvery steps (when > 0):
+//              step, padding (ints), rows*cols temperatures (doubles), colors (bytes), ages (bytes)
+public class BinaryTrajectoryWriter implements TrajectorySink {
+    static final int MAGIC = 0x52545744;          // "DWTR"
+    static final int GRID_MAGIC = 0x47535744;     // "DWSG"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int RECORD_BYTES = 56;
+    static final int SNAPSHOT_HEADER_BYTES = 8;
+    static final String GRID_SUFFIX = ".grid";
+
+    private static final int BUFFERED_RECORDS = 1024;
+    private static final int CHUNK_BYTES = 64 * 1024;
+
+    private final String path;
+    private final int snapshotEvery;
+    private final ByteBuffer records = ByteBuffer.allocateDirect(RECORD_BYTES * BUFFERED_RECORDS).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final DoubleBuffer chunkDoubles = chunk.asDoubleBuffer(); // Same memory, kept to not make a view per chunk
+    private FileChannel recordChannel;
+    private FileChannel gridChannel;
+    private double[] temperatures; // Copies of the grid, only used for engines without flat arrays
+    private byte[] colors;
+    private byte[] ages;
+
+    public BinaryTrajectoryWriter(String path, int snapshotEvery) {
+        this.path = path;
+        this.snapshotEvery = snapshotEvery;
+    }
+
+    static long snapshotBytes(int rows, int cols) {
+        return SNAPSHOT_HEADER_BYTES + (long) rows * cols * (Double.BYTES + 2);
+    }
+
+    @Override
+    public void writeHeader(Simulation simulation) {
+        close();
+        int rows = simulation.getConfig().rows;
+        int cols = simulation.getConfig().cols;
+        try {
+            recordChannel = open(path);
+            writeFileHeader(recordChannel, MAGIC, rows, cols);
+            if (snapshotEvery > 0) {
+                gridChannel = open(path + GRID_SUFFIX);
+                writeFileHeader(gridChannel, GRID_MAGIC, rows, cols);
+            }
+        } catch (IOException e) {
+            System.err.println("Error opening binary trajectory: " + e.getMessage());
+            close();
+        }
+    }
+
+    // Records and snapshots are at fixed offsets, so the output of a resumed run is cut right before the
+    // record of step and the first snapshot from step on
+    @Override
+    public void resume(int step, Simulation simulation) throws IOException {
+        close();
+        int rows = simulation.getConfig().rows;
+        int cols = simulation.getConfig().cols;
+        if (!Files.exists(Paths.get(path))) {
+            System.err.println("No output to continue in " + path + ", starting it at step " + step);
+            writeHeader(simulation);
+            return;
+        }
+        try {
+            recordChannel = reopen(path, MAGIC, rows, cols, HEADER_BYTES + (long) step * RECORD_BYTES);
+            if (snapshotEvery > 0) {
+                long snapshots = (step + snapshotEvery - 1) / snapshotEvery; // Steps 0, N, 2N, ... before step
+                gridChannel = reopen(path + GRID_SUFFIX, GRID_MAGIC, rows, cols,
+                        HEADER_BYTES + snapshots * snapshotBytes(rows, cols));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    // Open file for appending at position, after checking it was written with the same grid and interval
+    private FileChannel reopen(String file, int magic, int rows, int cols, long position) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            chunk.clear().limit(HEADER_BYTES);
+            while (chunk.hasRemaining()) {
+                if (channel.read(chunk) < 0) break;
+            }
+            chunk.flip();
+            if (chunk.remaining() < HEADER_BYTES || chunk.getInt() != magic || chunk.getInt() != VERSION
+                    || chunk.getInt() != rows || chunk.getInt() != cols || chunk.getInt() != snapshotEvery)
+                throw new IOException("Not the binary output of a " + rows + "x" + cols + " run with snapshots every "
+                        + snapshotEvery + " steps: " + file);
+            if (channel.size() < position)
+                throw new IOException("Output ends before the step to resume at: " + file);
+            channel.truncate(position);
+            channel.position(position);
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void writeStep(int stepNumber, Simulation simulation) {
+        if (recordChannel == null) return;
+        SimulationConfig config = simulation.getConfig();
+        records.putInt(stepNumber)
+                .putInt(simulation.getBlackDaisies())
+                .putInt(simulation.getWhiteDaisies())
+                .putInt(0)
+                .putDouble(simulation.getGlobalTemperature())
+                .putDouble(simulation.getSolarLuminosity())
+                .putDouble(config.albedoOfBlacks)
+                .putDouble(config.albedoOfWhites)
+                .putDouble(config.albedoOfSurface);
+        try {
+            if (!records.hasRemaining()) writeRecords();
+            if (gridChannel != null && stepNumber % snapshotEvery == 0) writeSnapshot(stepNumber, simulation);
+        } catch (IOException e) {
+            System.err.println("Error writing binary trajectory: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (recordChannel == null) return;
+        try {
+            writeRecords();
+        } catch (IOException e) {
+            System.err.println("Error writing binary trajectory: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        closeQuietly(recordChannel);
+        closeQuietly(gridChannel);
+        recordChannel = null;
+        gridChannel = null;
+    }
+
+    private static FileChannel open(String file) throws IOException {
+        return FileChannel.open(Paths.get(file), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private void writeFileHeader(FileChannel channel, int magic, int rows, int cols) throws IOException {
+        chunk.clear();
+        chunk.putInt(magic).putInt(VERSION).putInt(rows).putInt(cols).putInt(snapshotEvery);
+        while (chunk.position() < HEADER_BYTES) chunk.put((byte) 0);
+        chunk.flip();
+        writeFully(channel, chunk);
+    }
+
+    private void writeRecords() throws IOException {
+        records.flip();
+        writeFully(recordChannel, records);
+        records.clear();
+    }
+
+    private void writeSnapshot(int stepNumber, Simulation simulation) throws IOException {
+        if (simulation instanceof GridEngine && ((GridEngine) simulation).getGrid() == null) {
+            writeSnapshot(stepNumber, ((GridEngine) simulation).getStorage());
+            return;
+        }
+        double[] t;
+        byte[] c;
+        byte[] a;
+        if (simulation instanceof GridEngine) {
+            Grid grid = ((GridEngine) simulation).getGrid();
+            t = grid.temperature;
+            c = grid.color;
+            a = grid.age;
+        } else {
+            copyGrid(simulation);
+            t = temperatures;
+            c = colors;
+            a = ages;
+        }
+
+        chunk.clear();
+        chunk.putInt(stepNumber).putInt(0);
+        chunk.flip();
+        writeFully(gridChannel, chunk);
+
+        int doublesPerChunk = CHUNK_BYTES / Double.BYTES;
+        for (int from = 0; from < t.length; from += doublesPerChunk) {
+            int len = Math.min(doublesPerChunk, t.length - from);
+            chunkDoubles.clear();
+            chunkDoubles.put(t, from, len);
+            chunk.clear();
+            chunk.limit(len * Double.BYTES);
+            writeFully(gridChannel, chunk);
+        }
+        writeBytes(c);
+        writeBytes(a);
+    }
+
+    // Snapshot of a grid without arrays (off the heap), streamed through the chunk buffer cell by cell
+    private void writeSnapshot(int stepNumber, GridStorage grid) throws IOException {
+        chunk.clear();
+        chunk.putInt(stepNumber).putInt(0);
+        for (int i = 0; i < grid.size(); i++) {
+            if (chunk.remaining() < Double.BYTES) drainChunk();
+            chunk.putDouble(grid.getTemperature(i));
+        }
+        for (int i = 0; i < grid.size(); i++) {
+            if (!chunk.hasRemaining()) drainChunk();
+            chunk.put((byte) grid.getColor(i));
+        }
+        for (int i = 0; i < grid.size(); i++) {
+            if (!chunk.hasRemaining()) drainChunk();
+            chunk.put((byte) grid.getAge(i));
+        }
+        drainChunk();
+    }
+
+    private void drainChunk() throws IOException {
+        chunk.flip();
+        writeFully(gridChannel, chunk);
+        chunk.clear();
+    }
+
+    private void writeBytes(byte[] values) throws IOException {
+        for (int from = 0; from < values.length; from += CHUNK_BYTES) {
+            int len = Math.min(CHUNK_BYTES, values.length - from);
+            chunk.clear();
+            chunk.put(values, from, len);
+            chunk.flip();
+            writeFully(gridChannel, chunk);
+        }
+    }
+
+    private void copyGrid(Simulation simulation) {
+        int rows = simulation.getConfig().rows;
+        int cols = simulation.getConfig().cols;
+        if (temperatures == null) {
+            temperatures = new double[rows * cols];
+            colors = new byte[rows * cols];
+            ages = new byte[rows * cols];
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int i = row * cols + col;
+                temperatures[i] = simulation.getTemperature(row, col);
+                colors[i] = (byte) simulation.getDaisyColor(row, col);
+                ages[i] = (byte) simulation.getDaisyAge(row, col);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing binary trajectory: " + e.getMessage());
+        }
+    }
+}
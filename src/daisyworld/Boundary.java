@@ -0,0 +1,23 @@
+package daisyworld;
+
+// What lies past the edges of the grid. CLOSED: nothing, edge patches have fewer neighbours, receive less
+// heat and seed fewer patches (the original model). TORUS: the grid wraps around in both directions, so
+// every patch has four neighbours and the edges follow the same physics as the interior.
+public enum Boundary {
+    CLOSED,
+    TORUS;
+
+    public static Boundary parse(String name) {
+        switch (name) {
+            case "closed":
+                return CLOSED;
+            case "torus":
+                return TORUS;
+            default:
+                throw new IllegalArgumentException("Unknown boundary: " + name + " (expected closed or torus)");
+        }
+    }
+
+    @Override
+    public String toString() {return name().toLowerCase();}
+}
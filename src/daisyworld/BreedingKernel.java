@@ -0,0 +1,98 @@
+package daisyworld;
+
+// Race-free daisy reproduction in two passes over row tiles.
+// propose: every daisy ages and either dies or picks the first empty neighbour (up, down, left, right) to
+//          seed. It only reads colors and only writes its own age and action, so tiles never conflict.
+// resolve: every patch applies its own outcome. A dying daisy is removed; an empty patch takes a seed from
+//          the neighbour with the lowest cell index that proposed it, so a patch is never seeded twice.
+// Newly seeded daisies are not aged or bred until the next step. Neighbours follow the run's Boundary.
+// Resolving reads other tiles' actions and the colors of parents, which no tile changes in that pass.
+final class BreedingKernel {
+    static final byte STAY = 0;
+    static final byte SEED_UP = 1;
+    static final byte SEED_DOWN = 2;
+    static final byte SEED_LEFT = 3;
+    static final byte SEED_RIGHT = 4;
+    static final byte DIE = 5;
+
+    private BreedingKernel() {}
+
+    static void proposeRows(GridStorage grid, Neighbours neighbours, int maxAge, long stepKey, int fromRow, int toRow) {
+        int cols = grid.getCols();
+        for (int row = fromRow; row < toRow; row++) {
+            for (int col = 0; col < cols; col++) {
+                int i = row * cols + col;
+                grid.setAction(i, grid.hasDaisy(i) ? proposeCell(grid, neighbours, maxAge, stepKey, i, row, col) : STAY);
+            }
+        }
+    }
+
+    // Ages the daisy on patch i and returns what it does this step
+    static byte proposeCell(GridStorage grid, Neighbours neighbours, int maxAge, long stepKey, int i, int row, int col) {
+        int age = grid.getAge(i) + 1;
+        grid.setAge(i, age);
+        if (age >= maxAge) return DIE;
+
+        // Probability check for seeding based on the seedThreshold
+        if (CellRandom.nextDouble(stepKey, i) < seedThreshold(grid.getTemperature(i))) {
+            int n = neighbours.up(i, row);
+            if (n >= 0 && !grid.hasDaisy(n)) return SEED_UP;
+            n = neighbours.down(i, row);
+            if (n >= 0 && !grid.hasDaisy(n)) return SEED_DOWN;
+            n = neighbours.left(i, col);
+            if (n >= 0 && !grid.hasDaisy(n)) return SEED_LEFT;
+            n = neighbours.right(i, col);
+            if (n >= 0 && !grid.hasDaisy(n)) return SEED_RIGHT;
+        }
+        return STAY;
+    }
+
+    static double seedThreshold(double temp) {
+        return (0.1457 * temp) - (0.0032 * temp * temp) - 0.6443;
+    }
+
+    // Applies the proposals for rows [fromRow, toRow) and stores the tile's population in blacks/whites[tile]
+    // and the number of daisies that died in deaths[tile]
+    static void resolveRows(GridStorage grid, Neighbours neighbours, int fromRow, int toRow, int[] blacks, int[] whites,
+                            int[] deaths, int tile) {
+        int cols = grid.getCols();
+        int numBlacks = 0;
+        int numWhites = 0;
+        int numDeaths = 0;
+        for (int row = fromRow; row < toRow; row++) {
+            for (int col = 0; col < cols; col++) {
+                int i = row * cols + col;
+                if (grid.getAction(i) == DIE) {
+                    grid.clearDaisy(i);
+                    numDeaths++;
+                } else if (!grid.hasDaisy(i)) {
+                    int parent = parent(grid, neighbours, i, row, col);
+                    if (parent >= 0) {
+                        grid.setDaisy(i, grid.getColor(parent), 0);
+                    }
+                }
+                int color = grid.getColor(i);
+                if (color == Grid.BLACK) numBlacks++;
+                else if (color == Grid.WHITE) numWhites++;
+            }
+        }
+        blacks[tile] = numBlacks;
+        whites[tile] = numWhites;
+        deaths[tile] = numDeaths;
+    }
+
+    // The lowest-index neighbour whose action seeds empty patch i, -1 if none. On a torus a wrapped
+    // neighbour can have a higher index than the one across, so the indices are compared.
+    static int parent(GridStorage grid, Neighbours neighbours, int i, int row, int col) {
+        int parent = Integer.MAX_VALUE;
+        int n = neighbours.up(i, row);
+        if (n >= 0 && grid.getAction(n) == SEED_DOWN) parent = n;
+        n = neighbours.left(i, col);
+        if (n >= 0 && n < parent && grid.getAction(n) == SEED_RIGHT) parent = n;
+        n = neighbours.right(i, col);
+        if (n >= 0 && n < parent && grid.getAction(n) == SEED_LEFT) parent = n;
+        n = neighbours.down(i, row);
+        if (n >= 0 && n < parent && grid.getAction(n) == SEED_UP) parent = n;
+        return parent == Integer.MAX_VALUE ? -1 : parent;
+    }
+}
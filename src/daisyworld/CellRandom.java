@@ -0,0 +1,26 @@
+package daisyworld;
+
+// Counter-based random numbers: a draw is a pure function of (run seed, step, cell index), so parallel
+// tiles need no shared generator and a run replays identically for a seed whatever the thread count.
+// Mixing is the SplitMix64 finalizer, the same one SplittableRandom uses.
+final class CellRandom {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private CellRandom() {}
+
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    // Key of the stream for one step, computed once per step
+    static long stepKey(long seed, long step) {
+        return mix64(seed + (step + 1) * GOLDEN_GAMMA);
+    }
+
+    // Uniform double in [0, 1) for a cell within a step
+    static double nextDouble(long stepKey, int cell) {
+        return (mix64(stepKey + (cell + 1L) * GOLDEN_GAMMA) >>> 11) * 0x1.0p-53;
+    }
+}
@@ -0,0 +1,245 @@
+package daisyworld;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Complete state of a GridEngine run, to resume it exactly after a restart. The random state is just the
+// seed and the step number, since every draw is derived from them (CellRandom); global temperature and
+// daisy counts are recomputed from the grid.
+//
+// File layout (little-endian): header (HEADER_BYTES): magic, version, rows, cols, max age, percentage of
+// blacks, percentage of whites, step (ints), seed (long), diffuse factor, luminosity, albedo black, albedo
+// white, albedo surface (doubles), boundary (int, 0 closed, 1 torus), number of luminosity schedule points
+// (0 for a constant luminosity), length of the schedule spec (ints), padding; then the spec (UTF-8), the
+// steps (ints) and luminosities (doubles) of the schedule points, rows*cols temperatures (doubles), colors,
+// ages (bytes). Version 1 ends its header after the boundary, which is zero padding (closed) in files written
+// before boundaries existed, and has no schedule.
+public final class Checkpoint {
+    static final int MAGIC = 0x50435744; // "DWCP"
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 96;
+    private static final int CHUNK_BYTES = 64 * 1024;
+
+    private final SimulationConfig config;
+    private int step;
+    private final double[] temperature;
+    private final byte[] color;
+    private final byte[] age;
+
+    private Checkpoint(SimulationConfig config) {
+        this.config = config;
+        int size = config.rows * config.cols;
+        temperature = new double[size];
+        color = new byte[size];
+        age = new byte[size];
+    }
+
+    // Copy the state of engine between two steps, reusing the arrays of previous if it has the right size
+    static Checkpoint capture(GridEngine engine, Checkpoint previous) {
+        SimulationConfig config = engine.getConfig();
+        Checkpoint checkpoint = previous != null && previous.temperature.length == config.rows * config.cols
+                ? previous : new Checkpoint(config.copy());
+        copyParameters(config, checkpoint.config);
+        checkpoint.step = engine.getNumSteps();
+        Grid grid = engine.getGrid();
+        if (grid != null) {
+            System.arraycopy(grid.temperature, 0, checkpoint.temperature, 0, grid.size());
+            System.arraycopy(grid.color, 0, checkpoint.color, 0, grid.size());
+            System.arraycopy(grid.age, 0, checkpoint.age, 0, grid.size());
+        } else {
+            GridStorage storage = engine.getStorage();
+            for (int i = 0; i < storage.size(); i++) {
+                checkpoint.temperature[i] = storage.getTemperature(i);
+                checkpoint.color[i] = (byte) storage.getColor(i);
+                checkpoint.age[i] = (byte) storage.getAge(i);
+            }
+        }
+        return checkpoint;
+    }
+
+    private static void copyParameters(SimulationConfig from, SimulationConfig to) {
+        to.rows = from.rows;
+        to.cols = from.cols;
+        to.maxAge = from.maxAge;
+        to.percentageOfBlacks = from.percentageOfBlacks;
+        to.percentageOfWhites = from.percentageOfWhites;
+        to.seed = from.seed;
+        to.diffuseFactor = from.diffuseFactor;
+        to.solarLuminosity = from.solarLuminosity;
+        to.albedoOfBlacks = from.albedoOfBlacks;
+        to.albedoOfWhites = from.albedoOfWhites;
+        to.albedoOfSurface = from.albedoOfSurface;
+        to.boundary = from.boundary;
+        to.luminositySchedule = from.luminositySchedule;
+    }
+
+    // Parameters of the run. Storage options (active set, off-heap) are not saved and are given again on resume.
+    public SimulationConfig getConfig() {return config;}
+    public int getStep() {return step;}
+
+    // Write to file through a temporary file, so a crash while writing keeps the previous checkpoint
+    public void write(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            LuminositySchedule schedule = config.luminositySchedule;
+            byte[] spec = schedule == null ? new byte[0] : schedule.toString().getBytes(StandardCharsets.UTF_8);
+            int[] points = schedule == null ? new int[0] : schedule.getSteps();
+            double[] luminosities = schedule == null ? new double[0] : schedule.getLuminosities();
+            chunk.putInt(MAGIC).putInt(VERSION).putInt(config.rows).putInt(config.cols).putInt(config.maxAge)
+                    .putInt(config.percentageOfBlacks).putInt(config.percentageOfWhites).putInt(step)
+                    .putLong(config.seed).putDouble(config.diffuseFactor).putDouble(config.solarLuminosity)
+                    .putDouble(config.albedoOfBlacks).putDouble(config.albedoOfWhites).putDouble(config.albedoOfSurface)
+                    .putInt(config.boundary.ordinal()).putInt(points.length).putInt(spec.length);
+            while (chunk.position() < HEADER_BYTES) chunk.put((byte) 0);
+            putBytes(channel, chunk, spec);
+            for (int point : points) {
+                if (chunk.remaining() < Integer.BYTES) drain(channel, chunk);
+                chunk.putInt(point);
+            }
+            for (double luminosity : luminosities) {
+                if (chunk.remaining() < Double.BYTES) drain(channel, chunk);
+                chunk.putDouble(luminosity);
+            }
+            for (double t : temperature) {
+                if (chunk.remaining() < Double.BYTES) drain(channel, chunk);
+                chunk.putDouble(t);
+            }
+            putBytes(channel, chunk, color);
+            putBytes(channel, chunk, age);
+            drain(channel, chunk);
+            channel.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void putBytes(FileChannel channel, ByteBuffer chunk, byte[] values) throws IOException {
+        for (int from = 0; from < values.length; ) {
+            if (!chunk.hasRemaining()) drain(channel, chunk);
+            int len = Math.min(chunk.remaining(), values.length - from);
+            chunk.put(values, from, len);
+            from += len;
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer chunk) throws IOException {
+        chunk.flip();
+        while (chunk.hasRemaining()) channel.write(chunk);
+        chunk.clear();
+    }
+
+    public static Checkpoint read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            chunk.limit(0); // Nothing read yet
+            fill(channel, chunk, file);
+            if (chunk.remaining() < HEADER_BYTES || chunk.getInt() != MAGIC)
+                throw new IOException("Not a daisy world checkpoint: " + file);
+            int version = chunk.getInt();
+            if (version != 1 && version != VERSION)
+                throw new IOException("Unsupported checkpoint version " + version + " (this build reads 1 to "
+                        + VERSION + "): " + file);
+            SimulationConfig config = new SimulationConfig();
+            config.rows = chunk.getInt();
+            config.cols = chunk.getInt();
+            config.maxAge = chunk.getInt();
+            config.percentageOfBlacks = chunk.getInt();
+            config.percentageOfWhites = chunk.getInt();
+            int step = chunk.getInt();
+            config.seed = chunk.getLong();
+            config.diffuseFactor = chunk.getDouble();
+            config.solarLuminosity = chunk.getDouble();
+            config.albedoOfBlacks = chunk.getDouble();
+            config.albedoOfWhites = chunk.getDouble();
+            config.albedoOfSurface = chunk.getDouble();
+            int boundary = chunk.getInt();
+            if (boundary < 0 || boundary >= Boundary.values().length)
+                throw new IOException("Unknown boundary " + boundary + " in checkpoint: " + file);
+            config.boundary = Boundary.values()[boundary];
+            int points = version >= 2 ? chunk.getInt() : 0;
+            int specLength = version >= 2 ? chunk.getInt() : 0;
+            if (points < 0 || specLength < 0 || (points == 0) != (specLength == 0))
+                throw new IOException("Bad luminosity schedule in checkpoint: " + file);
+            config.validate();
+            chunk.position(HEADER_BYTES);
+
+            if (points > 0) {
+                byte[] spec = new byte[specLength];
+                getBytes(channel, chunk, spec, file);
+                int[] steps = new int[points];
+                double[] luminosities = new double[points];
+                for (int p = 0; p < points; p++) {
+                    if (chunk.remaining() < Integer.BYTES) fill(channel, chunk, file);
+                    steps[p] = chunk.getInt();
+                }
+                for (int p = 0; p < points; p++) {
+                    if (chunk.remaining() < Double.BYTES) fill(channel, chunk, file);
+                    luminosities[p] = chunk.getDouble();
+                }
+                try {
+                    config.luminositySchedule = LuminositySchedule.piecewise(
+                            new String(spec, StandardCharsets.UTF_8), steps, luminosities);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Bad luminosity schedule in checkpoint " + file + ": " + e.getMessage());
+                }
+            }
+
+            Checkpoint checkpoint = new Checkpoint(config);
+            checkpoint.step = step;
+            for (int i = 0; i < checkpoint.temperature.length; i++) {
+                if (chunk.remaining() < Double.BYTES) fill(channel, chunk, file);
+                checkpoint.temperature[i] = chunk.getDouble();
+            }
+            getBytes(channel, chunk, checkpoint.color, file);
+            getBytes(channel, chunk, checkpoint.age, file);
+            return checkpoint;
+        }
+    }
+
+    private static void getBytes(FileChannel channel, ByteBuffer chunk, byte[] values, Path file) throws IOException {
+        for (int from = 0; from < values.length; ) {
+            if (!chunk.hasRemaining()) fill(channel, chunk, file);
+            int len = Math.min(chunk.remaining(), values.length - from);
+            chunk.get(values, from, len);
+            from += len;
+        }
+    }
+
+    // Keep the unread bytes of chunk and read more after them
+    private static void fill(FileChannel channel, ByteBuffer chunk, Path file) throws IOException {
+        chunk.compact();
+        while (chunk.hasRemaining()) {
+            if (channel.read(chunk) < 0) break;
+        }
+        chunk.flip();
+        if (!chunk.hasRemaining()) throw new IOException("Checkpoint ends early: " + file);
+    }
+
+    // Put the saved state into engine, a new engine created with getConfig() (storage options may differ)
+    public void restore(GridEngine engine) {
+        GridStorage storage = engine.getStorage();
+        if (storage.getRows() != config.rows || storage.getCols() != config.cols)
+            throw new IllegalArgumentException("Checkpoint is " + config.rows + "x" + config.cols + ", engine is "
+                    + storage.getRows() + "x" + storage.getCols());
+        Grid grid = engine.getGrid();
+        if (grid != null) {
+            System.arraycopy(temperature, 0, grid.temperature, 0, grid.size());
+            System.arraycopy(color, 0, grid.color, 0, grid.size());
+            System.arraycopy(age, 0, grid.age, 0, grid.size());
+        } else {
+            for (int i = 0; i < storage.size(); i++) {
+                storage.setTemperature(i, temperature[i]);
+                storage.setDaisy(i, color[i], age[i]);
+            }
+        }
+        engine.resume(step);
+    }
+}
@@ -0,0 +1,77 @@
+package daisyworld;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Saves checkpoints from a background thread. The step loop only pays for copying the grid; writing the
+// file overlaps with the following steps. A checkpoint asked for while the previous one is still being
+// written is skipped rather than stalling the loop. Given the run's output, the checkpoint file is only
+// written once the output is in its file up to the checkpoint's step, without the loop waiting for it.
+public class CheckpointWriter implements AutoCloseable {
+    private final Path file;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "checkpoint-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private Checkpoint buffer; // Reused between checkpoints, only touched while no write is pending
+    private Future<?> pending;
+    private int skipped = 0;
+
+    public CheckpointWriter(Path file) {
+        this.file = file;
+    }
+
+    // Capture engine now and write it in the background. Returns false if skipped.
+    public boolean save(GridEngine engine) {
+        return save(engine, null);
+    }
+
+    // The same, for a run whose output a resumed run continues: a run resumed from this checkpoint must
+    // find the output at least this far, so the file waits for what the sink has been given until now
+    public boolean save(GridEngine engine, TrajectorySink sink) {
+        if (pending != null && !pending.isDone()) {
+            skipped++;
+            return false;
+        }
+        report();
+        buffer = Checkpoint.capture(engine, buffer);
+        Checkpoint checkpoint = buffer;
+        long mark = sink != null ? sink.mark() : 0;
+        pending = executor.submit(() -> {
+            if (sink != null) sink.awaitWritten(mark);
+            checkpoint.write(file);
+            return null;
+        });
+        return true;
+    }
+
+    // Wait for the checkpoint being written, if any
+    public void await() {
+        if (pending == null) return;
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Error writing checkpoint " + file + ": " + e.getCause());
+        }
+        pending = null;
+    }
+
+    // Report a failure of the last write without waiting for it
+    private void report() {
+        if (pending != null) await();
+    }
+
+    public int getSkipped() {return skipped;}
+
+    @Override
+    public void close() {
+        await();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,21 @@
+package daisyworld;
+
+// Progress lines on the console, at most one per interval so that printing never limits the step rate.
+// An interval of 0 prints every step.
+final class ConsoleLog {
+    private final long intervalNanos;
+    private long last;
+    private boolean printed = false;
+
+    ConsoleLog(long intervalMillis) {
+        this.intervalNanos = intervalMillis * 1_000_000L;
+    }
+
+    void step(int step, double globalTemperature) {
+        long now = System.nanoTime();
+        if (printed && now - last < intervalNanos) return;
+        printed = true;
+        last = now;
+        System.out.printf("Step %d: Global Temperature after step: %.2f%n", step, globalTemperature);
+    }
+}
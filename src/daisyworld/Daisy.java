@@ -0,0 +1,84 @@
+package daisyworld;
+
+// Daisy class representing individual daisies
+class Daisy {
+    private final SimulationEngine engine;
+    private int age;
+    private final int color; // 1 for black, 0 for white !!!!
+    private final double albedo;
+    private final int row; // Row of the patch where this daisy is located
+    private final int col; // Column of the patch where this daisy is located
+    private final int [] dirx = {-1,1,0,0};
+    private final int [] diry = {0,0,-1,1};
+
+    public Daisy(SimulationEngine engine, int color, int row, int col, int age) {
+        this.engine = engine;
+        this.color = color;
+        this.albedo = color==1 ? engine.getConfig().albedoOfBlacks : engine.getConfig().albedoOfWhites;
+        this.age = age;
+        this.row = row;
+        this.col = col;
+    }
+
+    public void incrementAge() {
+        this.age++;
+    }
+
+    public boolean isAlive() {
+        return age < engine.getConfig().maxAge;
+    }
+
+    public void checkSurvivability() {
+        incrementAge(); // Increment the age of the daisy
+
+        int seedingPlacexCord=-1;
+        int seedingPlaceyCord=-1;
+
+        if (isAlive()) {
+           double temp = engine.getPatch(row, col).getTemperature();
+           double seedThreshold = (0.1457 * temp) - (0.0032 * Math.pow(temp, 2)) - 0.6443;
+            // Probability check for seeding based on the seedThreshold
+            if (engine.nextDouble() < seedThreshold) {
+
+                for(int i=0;i<4;i++)
+                {
+                    Patch neighbour = engine.getNeighbour(row + dirx[i], col + diry[i]);
+                    if(neighbour != null)
+                    {
+                        if (!neighbour.hasDaisy()) {
+                            seedingPlacexCord = neighbour.getRow();
+                            seedingPlaceyCord = neighbour.getCol();
+                            break;
+                        }
+                    }
+                }
+
+                // If a seeding place is found, seed a new daisy
+                if (seedingPlaceyCord != -1) {
+                    if (color==0 && !engine.getPatch(seedingPlacexCord, seedingPlaceyCord).hasDaisy()) {
+                        engine.getPatch(seedingPlacexCord, seedingPlaceyCord).setDaisy(new Daisy(engine, 0,seedingPlacexCord,seedingPlaceyCord, 0)); // Create a white daisy
+                        engine.whiteDaisies++;
+                    } else if (color==1 && !engine.getPatch(seedingPlacexCord, seedingPlaceyCord).hasDaisy()) {
+                        engine.getPatch(seedingPlacexCord, seedingPlaceyCord).setDaisy(new Daisy(engine, 1, seedingPlacexCord, seedingPlaceyCord, 0)); // Create a black daisy
+                        engine.blackDaisies++;
+                    }
+                }
+            }
+        } else {
+            // If the daisys gonna die
+          //  System.out.printf("%s Daisy at (%d, %d) died.%n", color, row, col);
+            engine.getPatch(row, col).setDaisy(null); // Set the patch to empty (no daisy)
+
+            if(color==1) engine.blackDaisies--;
+            else if(color==0) engine.whiteDaisies--;
+        }
+    }
+
+    // Getters & Setters
+    public double getAlbedo() {return albedo;}
+    public int getColor() {return color;}
+    public int getAge() {return age;}
+    // Convert slider integer value (0-100) to double value (0.0-1.0)
+
+
+}
@@ -1,22 +1,16 @@
+package daisyworld;
+
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 
 public class DaisySimulationGUI {
-    static int NUM_STEPS = 0;
     public static final String CSV_FILE_PATH = "simulation_output.csv"; // Path for the CSV output file
 
     // Constants (static ones)
-    public static final int MAX_AGE = 25;  // Maximum age of daisies
     public static final int ROWS = 30;      // Number of rows in the patch grid
     public static final int COLS = 30;      // Number of columns in the patch grid
     public static double ALBEDO_OF_BLACKS = 0.25;
@@ -26,25 +20,23 @@ public class DaisySimulationGUI {
     public static double ALBEDO_OF_SURFACE = 0.4;
     public static int PERCENTAGE_OF_BLACKS = 20;
     public static int PERCENTAGE_OF_WHITE = 20;
-    public static final double DIFFUSE_FACTOR = 0.5;
-    public static int whiteDaisies = 0;
-    public static int blackDaisies = 0;
-    public static Patch[][] patches;  // 2D array of patches
+    private static volatile int STEP_DELAY_MS = 100; // Pause between steps, 0 runs flat out
 
     // Non-static ones
-    private double globalTemperature = 0;
-    private double solarLuminosity = 0.6;
-    private List<Daisy> daisies;
-    private ExecutorService executor; // Executor service for concurrent execution
+    private SimulationConfig config;
+    private Simulation engine; // Model state lives here, the GUI only displays it
+    private static StepScheduler scheduler; // Shared by every run, created once and closed with the window
     private boolean startButtonEnabled = false;
     private boolean stopButtonEnabled = false;
 
     private volatile boolean running; // Used to control the simulation loop
+    private Thread simulationThread;
     private FileService fileService = new FileService();
+    private final ConsoleLog log = new ConsoleLog(1000); // At most one progress line a second
 
     // GUI Components
     private JFrame frame;
-    private JButton[][] buttons; // Buttons representing the grid
+    private GridPanel gridPanel; // Image of the grid, repainted at a capped frame rate
     private JLabel temperatureLabel; // Label to display the global temperature
     private JComboBox<String> luminosityComboBox;
     private JSlider blackDaisySlider; // Slider for black daisies
@@ -55,6 +47,8 @@ public class DaisySimulationGUI {
     private JSlider whiteDaisyAlbedoSlider; // Slider for white daisies
     private JLabel blackDaisyAlbedoLabel; // Label for black daisy albedo value
     private JLabel whiteDaisyAlbedoLabel; // Label for white daisy albedo value
+    private JSlider stepDelaySlider;
+    private JLabel stepDelayLabel;
     private JButton startButton;
     private JButton stopButton;
     private JButton setupButton;
@@ -64,135 +58,56 @@ public class DaisySimulationGUI {
     }
 
     public void initialize() {
-        if (daisies != null)
-            daisies.clear();
-
-        whiteDaisies = 0;
-        blackDaisies = 0;
-        NUM_STEPS = 0;
-
-        this.daisies = new ArrayList<>();
-        patches = new Patch[ROWS][COLS];  // Initialize the patch grid
-        for (int row = 0; row < ROWS; row++) {
-            for (int col = 0; col < COLS; col++) {
-                patches[row][col] = new Patch(row, col);
-            }
+        config = new SimulationConfig();
+        config.rows = ROWS;
+        config.cols = COLS;
+        config.albedoOfBlacks = ALBEDO_OF_BLACKS;
+        config.albedoOfWhites = ALBEDO_OF_WHITES;
+        config.albedoOfSurface = ALBEDO_OF_SURFACE;
+        config.percentageOfBlacks = PERCENTAGE_OF_BLACKS;
+        config.percentageOfWhites = PERCENTAGE_OF_WHITE;
+
+        if (scheduler == null) {
+            // No more threads than the grid has tiles (a single one for the default grid, so no workers),
+            // reused across "Setup Simulation" clicks
+            int tiles = StepScheduler.tileCount(config.rows, StepScheduler.tileRows(config.rows, config.cols));
+            scheduler = new StepScheduler(Math.min(tiles, Runtime.getRuntime().availableProcessors()));
         }
-        executor = Executors.newFixedThreadPool(ROWS * COLS); // Create a thread pool
+        engine = new GridEngine(config, scheduler);
         createAndShowGUI(); // Create the GUI
     }
 
     // Setup initial conditions for the simulation
     public void setup(int lumiOption) {
         luminosityComboBox.setSelectedIndex(lumiOption);
-        switch (lumiOption) {
-            case 0:
-                solarLuminosity = 0.6;
-                break;
-            case 1:
-                solarLuminosity = 1.0;
-                break;
-            case 2:
-                solarLuminosity = 1.4;
-                break;
-            default:
-                solarLuminosity = 0.6;
-                break;
-        }
+        config.solarLuminosity = SimulationConfig.luminosityForOption(lumiOption);
+        config.luminositySchedule = SimulationConfig.scheduleForOption(lumiOption);
 
-        seedBlacksRandomly();
-        seedWhitesRandomly();
-        calculateTemperature();
-        System.out.println("Initial Global Temperature: " + globalTemperature);
+        engine.setup();
+        updateTemperatureLabel();
+        System.out.println("Initial Global Temperature: " + engine.getGlobalTemperature());
         fileService.writeCSVHeader();
-        fileService.writeToCSV(0, globalTemperature,blackDaisies,whiteDaisies,
-                solarLuminosity,ALBEDO_OF_BLACKS,ALBEDO_OF_WHITES,ALBEDO_OF_SURFACE);  // Write the initial state to CSV
+        fileService.writeToCSV(0, engine.getGlobalTemperature(), engine.getBlackDaisies(), engine.getWhiteDaisies(),
+                engine.getSolarLuminosity(), config.albedoOfBlacks, config.albedoOfWhites, config.albedoOfSurface);  // Write the initial state to CSV
     }
 
-    private void seedBlacksRandomly() {
-        int numBlackSeeds = (ROWS * COLS * DaisySimulationGUI.PERCENTAGE_OF_BLACKS) / 100;
-        Random rand = new Random();
-        while (blackDaisies < numBlackSeeds) {
-            int row = rand.nextInt(ROWS);
-            int col = rand.nextInt(COLS);
-            if (!patches[row][col].hasDaisy()) {
-                Daisy d = new Daisy(1, row, col, rand.nextInt(MAX_AGE));
-                daisies.add(d);
-                blackDaisies++;
-                patches[row][col].setDaisy(d);
-            }
-        }
+    private void updateTemperatureLabel() {
+        showTemperature(engine.getGlobalTemperature());
     }
 
-    private void seedWhitesRandomly() {
-        int numWhiteSeeds = (ROWS * COLS * DaisySimulationGUI.PERCENTAGE_OF_WHITE) / 100;
-        Random rand = new Random();
-        while (whiteDaisies < numWhiteSeeds) {
-            int row = rand.nextInt(ROWS);
-            int col = rand.nextInt(COLS);
-            if (!patches[row][col].hasDaisy()) {
-                Daisy d = new Daisy(0, row, col, rand.nextInt(MAX_AGE));
-                daisies.add(d);
-                whiteDaisies++;
-                patches[row][col].setDaisy(d);
-            }
-        }
-    }
-
-    private void calculateTemperature() {
-        for (int row = 0; row < ROWS; row++) {
-            for (int col = 0; col < COLS; col++) {
-                patches[row][col].calculateTemperature(solarLuminosity);
-            }
-        }
-        updateGlobalTemperature();
-    }
-
-    private void updateGlobalTemperature() {
-        double sum = 0;
-        for (int row = 0; row < ROWS; row++) {
-            for (int col = 0; col < COLS; col++) {
-                sum += patches[row][col].getTemperature();
-            }
-        }
-        globalTemperature = sum / (ROWS * COLS);
-        temperatureLabel.setText(String.format("Global Temperature: %.2f", globalTemperature)); // Update the label
+    private void showTemperature(double temperature) {
+        temperatureLabel.setText(String.format("Global Temperature: %.2f", temperature)); // Update the label
     }
 
+    // Runs on the simulation thread: never touches Swing components itself, the grid panel hands frames to the EDT
     public void simulateStep() {
-        for (int row = 0; row < ROWS; row++) {
-            for (int col = 0; col < COLS; col++) {
-                patches[row][col].calculateTemperature(solarLuminosity);
-            }
-        }
-
-        // Concurrent Temp Diffusion
-        for (int row = 0; row < ROWS; row++) {
-            for (int col = 0; col < COLS; col++) {
-                final int r = row;
-                final int c = col;
-                executor.submit(() -> patches[r][c].diffuse());
-            }
-        }
-
-        // Concurrent Breeding
-        for (int row = 0; row < ROWS; row++) {
-            for (int col = 0; col < COLS; col++) {
-                final int r = row;
-                final int c = col;
-                executor.submit(() -> {
-                    if (patches[r][c].hasDaisy())
-                        patches[r][c].getDaisy().checkSurvivability();
-                });
-            }
-        }
-
-        updateGlobalTemperature();
-        System.out.printf("Step " + NUM_STEPS + ": Global Temperature after step: %.2f%n", globalTemperature);
-        fileService.writeToCSV(NUM_STEPS+1, globalTemperature,blackDaisies,whiteDaisies,
-                solarLuminosity,ALBEDO_OF_BLACKS,ALBEDO_OF_WHITES,ALBEDO_OF_SURFACE); // Log step and temperature to CSV
-        updateGridDisplay(); // Update GUI representation after each step
-        NUM_STEPS++;
+        int step = engine.getNumSteps();
+        engine.step();
+        double temperature = engine.getGlobalTemperature();
+        log.step(step, temperature);
+        fileService.writeToCSV(step+1, temperature, engine.getBlackDaisies(), engine.getWhiteDaisies(),
+                engine.getSolarLuminosity(), config.albedoOfBlacks, config.albedoOfWhites, config.albedoOfSurface); // Log step and temperature to CSV
+        gridPanel.offer(engine, () -> showTemperature(temperature)); // Skipped if the display is behind
     }
 
 
@@ -200,22 +115,20 @@ public class DaisySimulationGUI {
     private void createAndShowGUI() {
         frame = new JFrame("Daisy Simulation");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                running = false;
+                joinSimulationThread();
+                fileService.close(); // Write out buffered rows before exiting
+                scheduler.close();
+            }
+        });
         frame.setLayout(new BorderLayout());
         frame.setExtendedState(JFrame.MAXIMIZED_BOTH);
 
         // Create panel for the grid
-        JPanel gridPanel = new JPanel(new GridLayout(ROWS, COLS));
-        buttons = new JButton[ROWS][COLS];
-
-        for (int row = 0; row < ROWS; row++) {
-            for (int col = 0; col < COLS; col++) {
-                buttons[row][col] = new JButton(); // Initialize buttons for the grid
-                buttons[row][col].setPreferredSize(new Dimension(40, 40));
-                buttons[row][col].setEnabled(false);
-                gridPanel.add(buttons[row][col]); // Add button to the grid panel
-            }
-        }
-
+        gridPanel = new GridPanel(config.rows, config.cols, GridPanel.DEFAULT_MAX_FPS);
         frame.add(gridPanel, BorderLayout.CENTER);
 
         // Create label to display global temperature
@@ -226,7 +139,7 @@ public class DaisySimulationGUI {
         // Luminosity Selection Panel
         JPanel luminosityPanel = new JPanel();
         luminosityPanel.setLayout(new BoxLayout(luminosityPanel, BoxLayout.Y_AXIS));
-        String[] luminosityOptions = {"Low Luminosity ", "Our Luminosity ", "High Luminosity "};
+        String[] luminosityOptions = {"Low Luminosity ", "Our Luminosity ", "High Luminosity ", "Rising Luminosity "};
         luminosityComboBox = new JComboBox<>(luminosityOptions); // Initialize ComboBox
         luminosityPanel.add(new JLabel("Select Solar Luminosity:"));
         luminosityPanel.add(luminosityComboBox); // Add ComboBox to panel
@@ -269,10 +182,23 @@ public class DaisySimulationGUI {
         whiteDaisyAlbedoLabel = new JLabel("White Daisy Albedo: " + ALBEDO_OF_WHITES);
         whiteDaisyAlbedoSlider.addChangeListener(e -> whiteDaisyAlbedoLabel.setText("White Daisy Albedo: " + getDoubleFromSlider(whiteDaisyAlbedoSlider.getValue())));
 
+        // Step Delay Slider
+        stepDelaySlider = new JSlider(0, 200, STEP_DELAY_MS);
+        stepDelaySlider.setMajorTickSpacing(50);
+        stepDelaySlider.setPaintTicks(true);
+        stepDelaySlider.setPaintLabels(true);
+        stepDelayLabel = new JLabel("Step Delay: " + STEP_DELAY_MS + " ms");
+        stepDelaySlider.addChangeListener(e -> {
+            STEP_DELAY_MS = stepDelaySlider.getValue(); // Read by the running simulation thread
+            stepDelayLabel.setText("Step Delay: " + STEP_DELAY_MS + " ms");
+        });
+
         luminosityPanel.add(blackDaisyAlbedoLabel);
         luminosityPanel.add(blackDaisyAlbedoSlider);
         luminosityPanel.add(whiteDaisyAlbedoLabel);
         luminosityPanel.add(whiteDaisyAlbedoSlider);
+        luminosityPanel.add(stepDelayLabel);
+        luminosityPanel.add(stepDelaySlider);
 
         // Setup Button
         setupButton = new JButton("Setup Simulation");
@@ -291,11 +217,10 @@ public class DaisySimulationGUI {
                 ALBEDO_OF_WHITES = getDoubleFromSlider(whiteDaisyAlbedoSlider.getValue());
 
                 int option = luminosityComboBox.getSelectedIndex();
-                daisies.clear();
                 frame.dispose();
                 initialize();
                 setup(option); // Call setup method when the button is pressed
-                updateGridDisplay(); // Refresh the grid display after setup
+                gridPanel.showNow(engine); // Refresh the grid display after setup
             }
         });
 
@@ -312,33 +237,22 @@ public class DaisySimulationGUI {
                 PERCENTAGE_OF_WHITE = whiteDaisySlider.getValue();
                 ALBEDO_OF_BLACKS = getDoubleFromSlider(blackDaisyAlbedoSlider.getValue());
                 ALBEDO_OF_WHITES = getDoubleFromSlider(whiteDaisyAlbedoSlider.getValue());
-
-                switch (luminosityComboBox.getSelectedIndex()) {
-                    case 0:
-                        solarLuminosity = 0.6;
-                        break;
-                    case 1:
-                        solarLuminosity = 1.0;
-                        break;
-                    case 2:
-                        solarLuminosity = 1.4;
-                        break;
-                    default:
-                        solarLuminosity = 0.6;
-                        break;
-                }
+                // The albedos and luminosity of the run were applied by Setup, before the engine was seeded
                 running = true; // Start the simulation
-                new Thread(() -> {
+                simulationThread = new Thread(() -> {
                     while (running) {
                         simulateStep(); // Perform simulation
+                        int delay = STEP_DELAY_MS;
+                        if (delay == 0) continue;
                         try {
-                            Thread.sleep(100); // Pause for milliseconds between steps
+                            Thread.sleep(delay); // Pause for milliseconds between steps
                         } catch (InterruptedException ex) {
                             Thread.currentThread().interrupt();
                             break; // Exit loop if interrupted
                         }
                     }
-                }).start();
+                }, "simulation");
+                simulationThread.start();
             }
         });
 
@@ -349,9 +263,13 @@ public class DaisySimulationGUI {
             @Override
             public void actionPerformed(ActionEvent e) {
                 running = false; // Stop the simulation
+                joinSimulationThread();
+                gridPanel.showNow(engine); // The last steps may have been skipped by the frame cap
+                updateTemperatureLabel();
                 stopButton.setEnabled(false);
                 startButton.setEnabled(true);
                 setupButton.setEnabled(true);
+                fileService.flush();
                 System.out.println("Simulation stopped.");
             }
         });
@@ -372,19 +290,15 @@ public class DaisySimulationGUI {
         frame.setVisible(true);
     }
 
-    private void updateGridDisplay() {
-        for (int row = 0; row < ROWS; row++) {
-            for (int col = 0; col < COLS; col++) {
-                if (patches[row][col].hasDaisy()) {
-                    Daisy d = patches[row][col].getDaisy();
-                    buttons[row][col].setText(d.getColor() == 1 ? "B" : "W"); // Show initial of the color
-                    buttons[row][col].setBackground(d.getColor() == 1 ? Color.BLACK : Color.WHITE);
-                } else {
-                    buttons[row][col].setText(""); // Clear text if no daisy is present
-                    buttons[row][col].setBackground(Color.LIGHT_GRAY); // Set a light gray background for empty patches
-                }
-            }
+    // Wait for the current step to finish, so the engine can be read from the EDT
+    private void joinSimulationThread() {
+        if (simulationThread == null) return;
+        try {
+            simulationThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
+        simulationThread = null;
     }
 
     // Convert slider integer value (0-100) to double value (0.0-1.0)
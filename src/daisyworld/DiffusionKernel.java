@@ -0,0 +1,99 @@
+package daisyworld;
+
+// Double-buffered diffusion: every patch keeps DIFFUSE_FACTOR of its own temperature and receives a
+// quarter of DIFFUSE_FACTOR of each neighbour's. Reads only the current temperatures and writes only its own
+// cell of the write buffer, so row tiles can be computed independently and the result does not depend on
+// the number of threads.
+// Neighbours past the edge of a tile come from its TileHalos, which also apply the run's Boundary.
+final class DiffusionKernel {
+    // Per-tile aggregates, AGGREGATES consecutive doubles per tile: the sum of the new temperatures and the
+    // sums under white and black daisies (bare ground is the rest). The class sums multiply by a 0/1 weight
+    // looked up by color + 1 instead of branching on the color, which is unpredictable.
+    static final int SUM = 0;
+    static final int SUM_WHITE = 1;
+    static final int SUM_BLACK = 2;
+    static final int AGGREGATES = 3;
+    private static final double[] WHITE_WEIGHT = {0, 1, 0}; // NONE, WHITE, BLACK
+    private static final double[] BLACK_WEIGHT = {0, 0, 1};
+
+    private DiffusionKernel() {}
+
+    // Diffuse rows [fromRow, toRow) of the current temperatures into the write buffer, the rows of one tile
+    // whose halos have been exchanged, and store the aggregates of the new temperatures in sums[offset..].
+    // Cells are summed in index order as they are written, the same order as sumRows. Only the first and
+    // last row read a halo, and only the first and last column look past the row: to its other end on a
+    // torus, at nothing (zero) otherwise.
+    static void diffuseAndSumRows(GridStorage grid, double df, int fromRow, int toRow, TileHalos halos, int tile,
+                                  double[] sums, int offset) {
+        int cols = grid.getCols();
+        int halo = halos.offset(tile);
+        double share = df / 4;
+        double sum = 0;
+        double white = 0, black = 0;
+        for (int row = fromRow; row < toRow; row++) {
+            int base = row * cols;
+            int end = base + cols - 1;
+            double[] above = row == fromRow ? halos.above : null; // Null: the row above is in the tile
+            double[] below = row == toRow - 1 ? halos.below : null;
+            for (int col = 0; col < cols; col++) {
+                int i = base + col;
+                double up = above != null ? above[halo + col] : grid.getTemperature(i - cols);
+                double down = below != null ? below[halo + col] : grid.getTemperature(i + cols);
+                double left = col > 0 ? grid.getTemperature(i - 1) : (halos.wrap ? grid.getTemperature(end) : 0);
+                double right = col < cols - 1 ? grid.getTemperature(i + 1) : (halos.wrap ? grid.getTemperature(base) : 0);
+                double t = diffuseCell(grid.getTemperature(i), up, down, left, right, share, df);
+                grid.setNextTemperature(i, t);
+                int color = grid.getColor(i);
+                sum += t;
+                white += t * WHITE_WEIGHT[color + 1];
+                black += t * BLACK_WEIGHT[color + 1];
+            }
+        }
+        storeSums(sums, offset, sum, white, black);
+    }
+
+    // Neighbours are always summed in the same order (up, down, left, right) so results are reproducible.
+    // A missing neighbour is passed as 0 and adds exactly nothing.
+    static double diffuseCell(double center, double up, double down, double left, double right, double share,
+                              double df) {
+        double received = 0;
+        received += up * share;
+        received += down * share;
+        received += left * share;
+        received += right * share;
+        return center * df + received;
+    }
+
+    // Aggregates of the current temperatures of cells [from, to), when no diffusion has produced them
+    static void sumRows(GridStorage grid, int from, int to, double[] sums, int offset) {
+        double sum = 0;
+        double white = 0, black = 0;
+        for (int i = from; i < to; i++) {
+            double t = grid.getTemperature(i);
+            int color = grid.getColor(i);
+            sum += t;
+            white += t * WHITE_WEIGHT[color + 1];
+            black += t * BLACK_WEIGHT[color + 1];
+        }
+        storeSums(sums, offset, sum, white, black);
+    }
+
+    // The same over arrays, for the vector kernel, which writes the next temperatures of a Grid directly
+    static void sumRows(double[] temperature, byte[] color, int from, int to, double[] sums, int offset) {
+        double sum = 0;
+        double white = 0, black = 0;
+        for (int i = from; i < to; i++) {
+            double t = temperature[i];
+            sum += t;
+            white += t * WHITE_WEIGHT[color[i] + 1];
+            black += t * BLACK_WEIGHT[color[i] + 1];
+        }
+        storeSums(sums, offset, sum, white, black);
+    }
+
+    static void storeSums(double[] sums, int offset, double sum, double white, double black) {
+        sums[offset + SUM] = sum;
+        sums[offset + SUM_WHITE] = white;
+        sums[offset + SUM_BLACK] = black;
+    }
+}
@@ -0,0 +1,305 @@
+package daisyworld;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// CSV output of a run. Rows are appended to an in-memory buffer which is handed to a background writer
+// thread once it is large or old enough, so the simulation thread only waits for the disk when the writer
+// falls MAX_BUFFERS buffers behind. Buffers come back to be refilled once written, and both queues are
+// arrays, so steady-state logging allocates nothing.
+// The file stays open for the whole run; close() (or flush()) writes out everything still buffered.
+public class FileService implements TrajectorySink {
+    public static final String CSV_HEADER = "Step,GlobalTemperature,NumBlacks,NumWhites,Luminosity,AlbedoBlack,AlbedoWhite,AlbedoSurface";
+
+    private static final int FLUSH_CHARS = 64 * 1024;  // Hand a buffer to the writer once it holds this much
+    private static final long FLUSH_MILLIS = 500;      // ... or once its oldest row is this old
+    private static final int MAX_BUFFERS = 64;         // Buffers in use at once, written or waiting
+    private static final StringBuilder END = new StringBuilder(); // Tells the writer thread to finish
+
+    private final String path;
+    private final String header;
+    private final BlockingQueue<StringBuilder> pending = new ArrayBlockingQueue<>(MAX_BUFFERS + 1); // With END
+    private final BlockingQueue<StringBuilder> spare = new ArrayBlockingQueue<>(MAX_BUFFERS); // Written, reused
+    private StringBuilder current = new StringBuilder(FLUSH_CHARS + 256);
+    private int buffers = 1;        // Buffers created so far, current included
+    private long currentSince = 0;  // When the first row of the current buffer was added
+    private long submitted = 0;     // Buffers handed to the writer
+    private long completed = 0;     // Buffers written out by the writer
+    private Thread writerThread;
+    private Writer out;
+
+    public FileService() {
+        this(DaisySimulationGUI.CSV_FILE_PATH);
+    }
+
+    public FileService(String path) {
+        this(path, CSV_HEADER);
+    }
+
+    // For outputs with their own columns, such as the consolidated output of a parameter sweep
+    public FileService(String path, String header) {
+        this.path = path;
+        this.header = header;
+    }
+
+    // Method to write the CSV header. Starts a new file, ending any previous one.
+    public void writeCSVHeader() {
+        close();
+        synchronized (this) {
+            open(false);
+            current.append(header).append('\n');
+            currentSince = System.nanoTime();
+        }
+    }
+
+    // CSV Logging Method
+    public synchronized void writeToCSV(int stepNumber, double globalTemp, int num_blacks, int num_whites,
+                            double luminosity, double albedo_black, double albedo_white,double albedo_surface ) {
+        if (writerThread == null) open(true); // No header written: append to the existing file
+        if (current.length() == 0) currentSince = System.nanoTime();
+        current.append(stepNumber).append(',').append(globalTemp).append(',').append(num_blacks).append(',')
+                .append(num_whites).append(',').append(luminosity).append(',').append(albedo_black).append(',')
+                .append(albedo_white).append(',').append(albedo_surface).append('\n');
+        if (current.length() >= FLUSH_CHARS) handOff(true);
+    }
+
+    // Append complete, newline-terminated rows in one go (they are never split from each other)
+    public synchronized void writeLines(CharSequence lines) {
+        if (writerThread == null) open(true);
+        if (current.length() == 0) currentSince = System.nanoTime();
+        current.append(lines);
+        if (current.length() >= FLUSH_CHARS) handOff(true);
+    }
+
+    @Override
+    public void writeHeader(Simulation simulation) {
+        writeCSVHeader();
+    }
+
+    @Override
+    public void resume(int step, Simulation simulation) throws IOException {
+        close();
+        Path file = Paths.get(path);
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            System.err.println("No output to continue in " + path + ", starting it at step " + step);
+            writeCSVHeader();
+            return;
+        }
+        long keep = lengthBefore(file, step);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(keep);
+        }
+        synchronized (this) {
+            open(true);
+        }
+    }
+
+    // Bytes of the header and of the complete rows before step, which must be in step order
+    private long lengthBefore(Path file, int step) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            StringBuilder line = new StringBuilder();
+            long read = 0;
+            long kept = 0;
+            for (int b = in.read(); b >= 0; b = in.read()) {
+                read++;
+                if (b != '\n') {
+                    line.append((char) b); // Only the ASCII header and step number are looked at
+                    continue;
+                }
+                if (kept == 0) {
+                    if (!line.toString().equals(header))
+                        throw new IOException("Not the output of a run with this header: " + file);
+                } else if (rowStep(line, file) >= step) {
+                    break;
+                }
+                kept = read;
+                line.setLength(0);
+            }
+            if (kept == 0) throw new IOException("No header in " + file);
+            return kept; // A last row without its newline was cut off by a crash and is dropped
+        }
+    }
+
+    private static int rowStep(StringBuilder row, Path file) throws IOException {
+        int comma = row.indexOf(",");
+        try {
+            return Integer.parseInt(row.substring(0, comma < 0 ? row.length() : comma));
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad row in " + file + ": " + row);
+        }
+    }
+
+    @Override
+    public void writeStep(int stepNumber, Simulation simulation) {
+        SimulationConfig config = simulation.getConfig();
+        writeToCSV(stepNumber, simulation.getGlobalTemperature(), simulation.getBlackDaisies(), simulation.getWhiteDaisies(),
+                simulation.getSolarLuminosity(), config.albedoOfBlacks, config.albedoOfWhites, config.albedoOfSurface);
+    }
+
+    // Queue everything logged so far without waiting for a spare buffer. The mark counts the buffer being
+    // filled too, which is queued by a later hand-off: buffers are written in order, so once that many are
+    // written, so is every row logged before mark().
+    @Override
+    public synchronized long mark() {
+        if (writerThread == null) return submitted;
+        handOff(false);
+        return submitted + (current.length() > 0 ? 1 : 0);
+    }
+
+    // Wait until the buffers up to mark are written, from any thread. A closed file has written them all.
+    @Override
+    public synchronized void awaitWritten(long mark) {
+        while (completed < mark && (writerThread == null || writerThread.isAlive())) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Write out everything logged so far and wait until it is on disk
+    @Override
+    public synchronized void flush() {
+        if (writerThread == null) return;
+        handOff(true);
+        Thread writer = writerThread;
+        while (completed < submitted && writer.isAlive()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Write out everything still buffered and close the file. The lock is released while waiting,
+    // since the writer thread needs it to report progress.
+    @Override
+    public void close() {
+        Thread writer;
+        synchronized (this) {
+            if (writerThread == null) return;
+            handOff(true);
+            pending.add(END);
+            writer = writerThread;
+            writerThread = null;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Buffers waiting for the writer thread
+    @Override
+    public int getQueueDepth() {
+        return pending.size();
+    }
+
+    private void open(boolean append) {
+        try {
+            out = new BufferedWriter(new FileWriter(path, append));
+        } catch (IOException e) {
+            System.err.println("Error opening CSV file: " + e.getMessage());
+            out = null;
+        }
+        writerThread = new Thread(this::writeLoop, "csv-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // Queue the current buffer and carry on in a spare one. With every buffer in use and mayWait, waits
+    // (releasing the lock) for the writer to hand one back; otherwise keeps filling the current buffer.
+    private void handOff(boolean mayWait) {
+        if (current.length() == 0) return;
+        StringBuilder next = spare.poll();
+        if (next == null && buffers < MAX_BUFFERS) {
+            next = new StringBuilder(FLUSH_CHARS + 256);
+            buffers++;
+        }
+        while (next == null && mayWait && writerThread.isAlive()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            next = spare.poll();
+        }
+        if (next == null) return;
+        pending.add(current); // Never full: it cannot hold more than the buffers there are
+        submitted++;
+        current = next;
+    }
+
+    // Called by the writer thread, which must not wait for a buffer only it can give back
+    private synchronized void handOffIfStale() {
+        if (current.length() > 0 && System.nanoTime() - currentSince >= TimeUnit.MILLISECONDS.toNanos(FLUSH_MILLIS))
+            handOff(false);
+    }
+
+    private synchronized void markCompleted() {
+        completed++;
+        notifyAll();
+    }
+
+    // Runs on the writer thread and never holds the lock while writing
+    private void writeLoop() {
+        Writer writer = out;
+        char[] chunk = new char[8192];
+        try {
+            while (true) {
+                StringBuilder buffer = pending.poll(FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+                if (buffer == null) {
+                    handOffIfStale();
+                    continue;
+                }
+                if (buffer == END) break;
+                if (writer != null) {
+                    try {
+                        for (int from = 0; from < buffer.length(); from += chunk.length) {
+                            int to = Math.min(buffer.length(), from + chunk.length);
+                            buffer.getChars(from, to, chunk, 0);
+                            writer.write(chunk, 0, to - from);
+                        }
+                        writer.flush(); // A completed buffer is in the file, see awaitWritten
+                    } catch (IOException e) {
+                        System.err.println("Error writing to CSV: " + e.getMessage());
+                    }
+                }
+                buffer.setLength(0);
+                spare.add(buffer);
+                markCompleted();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing CSV file: " + e.getMessage());
+                }
+            }
+            synchronized (this) {
+                notifyAll(); // Release anyone still waiting in flush()
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package daisyworld;
+
+import java.util.Arrays;
+
+// Structure-of-arrays storage of the patch grid: one flat array per attribute, indexed by row*cols+col
+class Grid implements GridStorage {
+    public static final byte NONE = -1;  // No daisy on the patch
+    public static final byte WHITE = 0;
+    public static final byte BLACK = 1;
+
+    final int rows;
+    final int cols;
+    double[] temperature;
+    double[] nextTemperature; // Write buffer for double-buffered phases such as diffusion
+    final byte[] color;
+    final byte[] age;
+    final byte[] action; // Breeding scratch, see GridStorage
+
+    public Grid(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        int size = rows * cols;
+        temperature = new double[size];
+        nextTemperature = new double[size];
+        color = new byte[size];
+        age = new byte[size];
+        action = new byte[size];
+        Arrays.fill(color, NONE);
+    }
+
+    @Override public int getRows() {return rows;}
+    @Override public int getCols() {return cols;}
+    @Override public int index(int row, int col) {return row * cols + col;}
+    @Override public int size() {return temperature.length;}
+
+    // Make the write buffer the current temperature once a double-buffered phase is complete
+    @Override
+    public void swapTemperature() {
+        double[] t = temperature;
+        temperature = nextTemperature;
+        nextTemperature = t;
+    }
+
+    @Override public double getTemperature(int i) {return temperature[i];}
+    @Override public void setTemperature(int i, double t) {temperature[i] = t;}
+    @Override public void setNextTemperature(int i, double t) {nextTemperature[i] = t;}
+    @Override public boolean hasDaisy(int i) {return color[i] != NONE;}
+    @Override public int getColor(int i) {return color[i];}
+    @Override public int getAge(int i) {return age[i];}
+    @Override public void setAge(int i, int daisyAge) {age[i] = (byte) daisyAge;}
+
+    @Override
+    public void setDaisy(int i, int daisyColor, int daisyAge) {
+        color[i] = (byte) daisyColor;
+        age[i] = (byte) daisyAge;
+    }
+
+    @Override
+    public void clearDaisy(int i) {
+        color[i] = NONE;
+        age[i] = 0;
+    }
+
+    @Override public byte getAction(int i) {return action[i];}
+    @Override public void setAction(int i, byte a) {action[i] = a;}
+}
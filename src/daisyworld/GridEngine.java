@@ -0,0 +1,282 @@
+package daisyworld;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+// Simulation engine over the flat Grid arrays or an OffHeapGrid, which step through the same kernels. Same
+// rules as Patch.calculateTemperature, Patch.diffuse and Daisy.checkSurvivability, without a Patch or Daisy
+// object per cell, with every phase run over row tiles.
+// Tiles see the rest of the grid through their halo rows (TileHalos) and the Neighbours of the boundary.
+public class GridEngine implements Simulation {
+    private final SimulationConfig config;
+    private final GridStorage storage;
+    private final Grid grid; // On-heap storage, null if the grid is off the heap
+    private final StepScheduler scheduler;
+    private final TemperatureKernel kernel;
+    private final int tileRows;
+    private final int tiles;
+    private final TileHalos halos;
+    private final Neighbours neighbours;
+    private final double[] tileSums; // Per-tile temperature aggregates (DiffusionKernel.AGGREGATES), folded in tile order
+    private final int[] tileBlacks; // Per-tile daisy counts from the breeding phase
+    private final int[] tileWhites;
+    private final int[] tileDeaths;
+    private final ActiveSetBreeding activeSet; // Only in active-set mode, null otherwise
+
+    // Tile tasks of the phases, created once so that a step allocates nothing
+    private final StepScheduler.TileTask heatTask = this::heatTile;
+    private final StepScheduler.TileTask diffuseTask = this::diffuseTile;
+    private final StepScheduler.TileTask proposeTask = this::proposeTile;
+    private final StepScheduler.TileTask resolveTask = this::resolveTile;
+    private final StepScheduler.TileTask proposeChunkTask = this::proposeChunk;
+    private final StepScheduler.TileTask resolveActiveSetTask = this::resolveActiveSet;
+    private final StepScheduler.TileTask sumTask = this::sumTile;
+
+    private int numSteps = 0;
+    private double globalTemperature = 0;
+    private double meanTemperatureBare, meanTemperatureWhite, meanTemperatureBlack;
+    private double solarLuminosity; // Of this step, from the config's schedule
+    private double heatingSurface, heatingBlack, heatingWhite; // Local heating of this step per albedo
+    private long stepKey; // Random stream of this step's breeding
+    private int whiteDaisies = 0;
+    private int blackDaisies = 0;
+    private int births = 0; // In the last step
+    private int deaths = 0;
+
+    public GridEngine(SimulationConfig config) {
+        this(config, new StepScheduler(1));
+    }
+
+    public GridEngine(SimulationConfig config, StepScheduler scheduler) {
+        this(config, scheduler, TemperatureKernel.SCALAR);
+    }
+
+    public GridEngine(SimulationConfig config, StepScheduler scheduler, TemperatureKernel kernel) {
+        this.config = config;
+        this.scheduler = scheduler;
+        this.kernel = kernel;
+        config.validate();
+        if (config.offHeap || config.gridFile != null) {
+            if (kernel != TemperatureKernel.SCALAR)
+                throw new IllegalArgumentException("The " + kernel.name() + " kernel needs the on-heap grid");
+            this.grid = null;
+            this.storage = createOffHeapGrid(config);
+        } else {
+            this.grid = new Grid(config.rows, config.cols);
+            this.storage = grid;
+        }
+        this.tileRows = StepScheduler.tileRows(config.rows, config.cols);
+        this.tiles = StepScheduler.tileCount(config.rows, tileRows);
+        this.halos = new TileHalos(config.rows, config.cols, tiles, config.boundary);
+        this.neighbours = new Neighbours(config.rows, config.cols, config.boundary);
+        this.tileSums = new double[tiles * DiffusionKernel.AGGREGATES];
+        this.tileBlacks = new int[tiles];
+        this.tileWhites = new int[tiles];
+        this.tileDeaths = new int[tiles];
+        this.activeSet = config.activeSet ? new ActiveSetBreeding(grid, neighbours) : null;
+    }
+
+    private static OffHeapGrid createOffHeapGrid(SimulationConfig config) {
+        if (config.gridFile == null) return OffHeapGrid.allocate(config.rows, config.cols);
+        try {
+            return OffHeapGrid.map(Paths.get(config.gridFile), config.rows, config.cols);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map grid file " + config.gridFile, e);
+        }
+    }
+
+    @Override
+    public void setup() {
+        SplittableRandom rand = new SplittableRandom(config.seed);
+        seedRandomly(rand, Grid.BLACK, config.percentageOfBlacks);
+        seedRandomly(rand, Grid.WHITE, config.percentageOfWhites);
+        if (activeSet != null) activeSet.rebuild();
+        calculateTemperature(0);
+        sumTemperatures();
+    }
+
+    // Continue from a grid filled in by Checkpoint.restore, saved after the given number of steps
+    void resume(int steps) {
+        int blacks = 0;
+        int whites = 0;
+        for (int i = 0; i < storage.size(); i++) {
+            int color = storage.getColor(i);
+            if (color == Grid.BLACK) blacks++;
+            else if (color == Grid.WHITE) whites++;
+        }
+        blackDaisies = blacks;
+        whiteDaisies = whites;
+        if (activeSet != null) activeSet.rebuild();
+        numSteps = steps;
+        solarLuminosity = config.luminosityAt(steps);
+        sumTemperatures();
+    }
+
+    private void seedRandomly(SplittableRandom rand, int color, int percentage) {
+        int numSeeds = (int) ((long) storage.size() * percentage / 100);
+        int seeded = 0;
+        while (seeded < numSeeds) {
+            int i = storage.index(rand.nextInt(config.rows), rand.nextInt(config.cols));
+            if (!storage.hasDaisy(i)) {
+                storage.setDaisy(i, color, rand.nextInt(config.maxAge));
+                seeded++;
+                if (color == Grid.BLACK) blackDaisies++;
+                else whiteDaisies++;
+            }
+        }
+    }
+
+    // The phases of a step are package-private so benchmarks can time them one by one. Diffusion also
+    // sums the new temperatures per tile, so the aggregates only need folding, not another pass over the grid.
+    @Override
+    public void step() {
+        calculateTemperature(numSteps + 1);
+        diffuse();
+        updateGlobalTemperature(); // Breeding does not change temperatures
+        breed();
+        numSteps++;
+    }
+
+    // Local heating only depends on the albedo, so it is computed once per albedo rather than per patch
+    static double localHeating(double albedo, double solarLuminosity) {
+        double absorbedLuminosity = (1 - albedo) * solarLuminosity;
+        if (absorbedLuminosity > 0) {
+            return 72 * Math.log(absorbedLuminosity) + 80;
+        }
+        return 80; // Setting a lower limit if absorbed luminosity is 0 or negative
+    }
+
+    // Heat with the luminosity of the step being computed; the kernels only see the three heating values
+    void calculateTemperature(int step) {
+        solarLuminosity = config.luminosityAt(step);
+        heatingSurface = localHeating(config.albedoOfSurface, solarLuminosity);
+        heatingBlack = localHeating(config.albedoOfBlacks, solarLuminosity);
+        heatingWhite = localHeating(config.albedoOfWhites, solarLuminosity);
+        scheduler.runPhase(StepScheduler.Phase.HEATING, tiles, heatTask);
+    }
+
+    private void heatTile(int tile) {
+        kernel.heat(storage, heatingSurface, heatingBlack, heatingWhite, tileStart(tile), tileEnd(tile));
+    }
+
+    void diffuse() {
+        scheduler.runPhase(StepScheduler.Phase.DIFFUSION, tiles, diffuseTask);
+        storage.swapTemperature();
+    }
+
+    // Each tile exchanges its own halos first: heating is complete and diffusion only writes the other buffer
+    private void diffuseTile(int tile) {
+        int fromRow = tile * tileRows;
+        int toRow = tileEndRow(tile);
+        halos.exchange(storage, tile, fromRow, toRow);
+        kernel.diffuse(storage, config.diffuseFactor, fromRow, toRow, halos, tile, tileSums,
+                tile * DiffusionKernel.AGGREGATES);
+    }
+
+    // First and one-past-last cell index of a tile
+    private int tileStart(int tile) {return tile * tileRows * config.cols;}
+    private int tileEnd(int tile) {return Math.min(config.rows, (tile + 1) * tileRows) * config.cols;}
+    private int tileEndRow(int tile) {return Math.min(config.rows, (tile + 1) * tileRows);}
+
+    void breed() {
+        stepKey = CellRandom.stepKey(config.seed, numSteps);
+        int population = blackDaisies + whiteDaisies;
+        if (activeSet != null) {
+            scheduler.runPhase(StepScheduler.Phase.BREEDING, activeSet.chunks(), proposeChunkTask);
+            scheduler.runPhase(StepScheduler.Phase.BREEDING, 1, resolveActiveSetTask);
+            blackDaisies = activeSet.getBlacks();
+            whiteDaisies = activeSet.getWhites();
+            deaths = activeSet.getDeaths();
+            births = blackDaisies + whiteDaisies - population + deaths;
+            return;
+        }
+        scheduler.runPhase(StepScheduler.Phase.BREEDING, tiles, proposeTask);
+        scheduler.runPhase(StepScheduler.Phase.BREEDING, tiles, resolveTask);
+        int blacks = 0;
+        int whites = 0;
+        int died = 0;
+        for (int t = 0; t < tiles; t++) {
+            blacks += tileBlacks[t];
+            whites += tileWhites[t];
+            died += tileDeaths[t];
+        }
+        blackDaisies = blacks;
+        whiteDaisies = whites;
+        deaths = died;
+        births = blacks + whites - population + died;
+    }
+
+    private void proposeTile(int tile) {
+        BreedingKernel.proposeRows(storage, neighbours, config.maxAge, stepKey, tile * tileRows, tileEndRow(tile));
+    }
+
+    private void resolveTile(int tile) {
+        BreedingKernel.resolveRows(storage, neighbours, tile * tileRows, tileEndRow(tile), tileBlacks, tileWhites,
+                tileDeaths, tile);
+    }
+
+    private void proposeChunk(int chunk) {
+        activeSet.propose(chunk, config.maxAge, stepKey);
+    }
+
+    private void resolveActiveSet(int tile) {
+        activeSet.resolve();
+    }
+
+    // Fold the per-tile aggregates of the current temperatures. The means under daisies use the population
+    // the temperatures were computed with, i.e. the temperatures the daisies breed with this step.
+    void updateGlobalTemperature() {
+        long start = System.nanoTime();
+        double sum = 0;
+        double white = 0, black = 0;
+        for (int t = 0; t < tiles; t++) {
+            int offset = t * DiffusionKernel.AGGREGATES;
+            sum += tileSums[offset + DiffusionKernel.SUM];
+            white += tileSums[offset + DiffusionKernel.SUM_WHITE];
+            black += tileSums[offset + DiffusionKernel.SUM_BLACK];
+        }
+        int size = storage.size();
+        globalTemperature = sum / size;
+        meanTemperatureBare = mean(sum - white - black, size - blackDaisies - whiteDaisies);
+        meanTemperatureWhite = mean(white, whiteDaisies);
+        meanTemperatureBlack = mean(black, blackDaisies);
+        scheduler.addPhaseNanos(StepScheduler.Phase.AGGREGATION, System.nanoTime() - start);
+    }
+
+    private static double mean(double sum, int count) {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    // Aggregate the current temperatures with a pass of their own, when no diffusion has produced them
+    private void sumTemperatures() {
+        scheduler.runPhase(StepScheduler.Phase.AGGREGATION, tiles, sumTask);
+        updateGlobalTemperature();
+    }
+
+    private void sumTile(int tile) {
+        DiffusionKernel.sumRows(storage, tileStart(tile), tileEnd(tile), tileSums, tile * DiffusionKernel.AGGREGATES);
+    }
+
+    // Getters
+    public Grid getGrid() {return grid;} // Null if the grid is off the heap
+    public GridStorage getStorage() {return storage;}
+    public StepScheduler getScheduler() {return scheduler;}
+    public TemperatureKernel getKernel() {return kernel;}
+    @Override public SimulationConfig getConfig() {return config;}
+    @Override public int getNumSteps() {return numSteps;}
+    @Override public double getGlobalTemperature() {return globalTemperature;}
+    @Override public double getSolarLuminosity() {return solarLuminosity;}
+    // Mean temperature of bare patches and of patches under white or black daisies, NaN if there are none
+    public double getMeanTemperatureBare() {return meanTemperatureBare;}
+    public double getMeanTemperatureWhite() {return meanTemperatureWhite;}
+    public double getMeanTemperatureBlack() {return meanTemperatureBlack;}
+    @Override public int getBlackDaisies() {return blackDaisies;}
+    @Override public int getWhiteDaisies() {return whiteDaisies;}
+    public int getBirths() {return births;} // Daisies seeded in the last step
+    public int getDeaths() {return deaths;} // Daisies that died in the last step
+    @Override public int getDaisyColor(int row, int col) {return storage.getColor(storage.index(row, col));}
+    @Override public int getDaisyAge(int row, int col) {return storage.getAge(storage.index(row, col));}
+    @Override public double getTemperature(int row, int col) {return storage.getTemperature(storage.index(row, col));}
+}
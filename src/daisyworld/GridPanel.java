@@ -0,0 +1,92 @@
+package daisyworld;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Draws the daisies of a simulation as one pixel per patch in a BufferedImage, scaled to the panel.
+// The simulation thread offers a frame after each step; at most maxFps frames a second are taken, and
+// a frame is skipped while the previous one has not been painted yet. Taking a frame copies the colors
+// between two steps, so it is consistent; everything Swing is done on the EDT.
+class GridPanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    static final int DEFAULT_MAX_FPS = 30;
+    private static final int NO_DAISY_RGB = Color.LIGHT_GRAY.getRGB();
+    private static final int BLACK_RGB = Color.BLACK.getRGB();
+    private static final int WHITE_RGB = Color.WHITE.getRGB();
+
+    private final BufferedImage image;
+    private final int[] pixels; // Backing array of image, only written on the EDT
+    private final int[] frame;  // Next frame, written by the simulation thread while no frame is pending
+    private final AtomicBoolean pending = new AtomicBoolean(false);
+    private volatile int generation = 0; // Bumped by showNow: frames offered before it are dropped unpainted
+    private final long frameNanos;
+    private long lastFrame = 0;
+    private int skipped = 0;
+
+    GridPanel(int rows, int cols, int maxFps) {
+        image = new BufferedImage(cols, rows, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        frame = new int[rows * cols];
+        frameNanos = 1_000_000_000L / maxFps;
+        int cell = Math.max(1, Math.min(40, 900 / Math.max(rows, cols)));
+        setPreferredSize(new Dimension(cols * cell, rows * cell));
+        Arrays.fill(pixels, NO_DAISY_RGB);
+    }
+
+    // Called by the simulation thread after a step. Takes a frame if one is due and the last one has been
+    // painted, and runs onPaint on the EDT with the repaint, e.g. to show values read at the same step.
+    // Returns false if the frame was skipped.
+    boolean offer(Simulation simulation, Runnable onPaint) {
+        long now = System.nanoTime();
+        if (now - lastFrame < frameNanos || pending.get()) {
+            skipped++;
+            return false;
+        }
+        lastFrame = now;
+        capture(simulation);
+        pending.set(true);
+        int offered = generation;
+        SwingUtilities.invokeLater(() -> {
+            pending.set(false);
+            if (offered != generation) return; // Older than a state drawn by showNow since
+            System.arraycopy(frame, 0, pixels, 0, frame.length);
+            if (onPaint != null) onPaint.run();
+            repaint();
+        });
+        return true;
+    }
+
+    // Draw the current state right away, for use on the EDT while the simulation is not stepping. A frame
+    // still queued from the last steps is dropped with its onPaint, so it cannot overwrite this state later.
+    void showNow(Simulation simulation) {
+        generation++;
+        capture(simulation);
+        System.arraycopy(frame, 0, pixels, 0, frame.length);
+        repaint();
+    }
+
+    private void capture(Simulation simulation) {
+        int rows = image.getHeight();
+        int cols = image.getWidth();
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int color = simulation.getDaisyColor(row, col);
+                frame[row * cols + col] = color == Simulation.NO_DAISY ? NO_DAISY_RGB
+                        : (color == Grid.BLACK ? BLACK_RGB : WHITE_RGB);
+            }
+        }
+    }
+
+    int getSkipped() {return skipped;}
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        g.drawImage(image, 0, 0, getWidth(), getHeight(), null); // Nearest neighbour, one block per patch
+    }
+}
@@ -0,0 +1,30 @@
+package daisyworld;
+
+// Per-patch state of a world, addressed by cell index row*cols+col: the reads and updates Patch offers on
+// one patch. Implemented on the heap by Grid and off the heap by OffHeapGrid. The kernels of GridEngine are
+// written against it, so both step through the same code.
+interface GridStorage {
+    int getRows();
+    int getCols();
+    int size();
+
+    default int index(int row, int col) {return row * getCols() + col;}
+
+    double getTemperature(int i);
+    void setTemperature(int i, double t);
+
+    // Write buffer of double-buffered phases, made current by swapTemperature
+    void setNextTemperature(int i, double t);
+    void swapTemperature();
+
+    boolean hasDaisy(int i);
+    int getColor(int i);
+    int getAge(int i);
+    void setAge(int i, int daisyAge);
+    void setDaisy(int i, int daisyColor, int daisyAge);
+    void clearDaisy(int i);
+
+    // Breeding scratch: the outcome each patch proposes this step (BreedingKernel), never saved
+    byte getAction(int i);
+    void setAction(int i, byte action);
+}
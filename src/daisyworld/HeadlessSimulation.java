@@ -0,0 +1,307 @@
+package daisyworld;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+// Command line entry point: runs a simulation without any GUI, as fast as the CPU allows
+public class HeadlessSimulation {
+
+    public static void main(String[] args) {
+        SimulationConfig config = new SimulationConfig();
+        int steps = 1000;
+        String output = DaisySimulationGUI.CSV_FILE_PATH;
+        boolean quiet = false;
+        long logInterval = 1000;
+        int metricsEvery = 0;
+        boolean jmx = false;
+        String backend = "grid";
+        int threads = 1;
+        String format = "csv";
+        int snapshotEvery = 0;
+        String checkpointPath = null;
+        int checkpointEvery = 0;
+        String resumePath = null;
+        List<String> runParameters = new ArrayList<>(); // Option, value, option, value, ... as given
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--steps":
+                    steps = Integer.parseInt(args[++i]);
+                    break;
+                case "--output":
+                    output = args[++i];
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--backend":
+                    backend = args[++i];
+                    break;
+                case "--format":
+                    format = args[++i];
+                    break;
+                case "--snapshot-every":
+                    snapshotEvery = Integer.parseInt(args[++i]);
+                    break;
+                case "--off-heap":
+                    config.offHeap = true;
+                    break;
+                case "--grid-file":
+                    config.gridFile = args[++i];
+                    break;
+                case "--checkpoint":
+                    checkpointPath = args[++i];
+                    break;
+                case "--checkpoint-every":
+                    checkpointEvery = Integer.parseInt(args[++i]);
+                    break;
+                case "--resume":
+                    resumePath = args[++i];
+                    break;
+                case "--active-set":
+                    config.activeSet = true;
+                    break;
+                case "--log-interval":
+                    logInterval = Long.parseLong(args[++i]);
+                    break;
+                case "--metrics-every":
+                    metricsEvery = Integer.parseInt(args[++i]);
+                    break;
+                case "--jmx":
+                    jmx = true;
+                    break;
+                case "--quiet":
+                    quiet = true;
+                    break;
+                default:
+                    if (RUN_PARAMETERS.contains(args[i])) {
+                        String option = args[i];
+                        String value = args[++i];
+                        setRunParameter(config, option, value);
+                        runParameters.add(option);
+                        runParameters.add(value);
+                        break;
+                    }
+                    System.err.println("Unknown option: " + args[i]);
+                    printUsage();
+                    System.exit(1);
+            }
+        }
+
+        Checkpoint resumed = null;
+        if (resumePath != null) {
+            resumed = readCheckpoint(resumePath);
+            // Run parameters, luminosity schedule included, come from the checkpoint, storage options
+            // from the command line
+            SimulationConfig saved = resumed.getConfig();
+            if (!matchesCheckpoint(runParameters, saved, resumePath)) System.exit(1);
+            saved.activeSet = config.activeSet;
+            saved.offHeap = config.offHeap;
+            saved.gridFile = config.gridFile;
+            config = saved;
+        }
+        if ((resumed != null || checkpointPath != null) && backend.equals("objects")) {
+            System.err.println("Checkpoints need the grid or vector backend");
+            System.exit(1);
+        }
+
+        TrajectorySink sink = createSink(format, output, snapshotEvery);
+        StepScheduler scheduler = new StepScheduler(threads);
+        Simulation engine = createEngine(backend, config, scheduler);
+        if (resumed != null) {
+            resumed.restore((GridEngine) engine);
+            System.out.println("Resumed from " + resumePath + " at step " + resumed.getStep());
+        } else {
+            engine.setup();
+        }
+        int first = engine.getNumSteps();
+        if (resumed != null) {
+            try {
+                sink.resume(first, engine); // Rows before the checkpoint stay, the checkpoint's step is written again
+            } catch (IOException e) {
+                System.err.println("Cannot continue the output " + output + ": " + e.getMessage());
+                System.exit(1);
+            }
+        } else {
+            sink.writeHeader(engine);
+        }
+        sink.writeStep(first, engine);
+        CheckpointWriter checkpoints = checkpointPath == null ? null : new CheckpointWriter(Paths.get(checkpointPath));
+
+        System.out.println("Seed: " + config.seed);
+        if (config.luminositySchedule != null) System.out.println("Luminosity schedule: " + config.luminositySchedule);
+        if (engine instanceof GridEngine) System.out.println("Kernel: " + ((GridEngine) engine).getKernel().name());
+        ConsoleLog log = quiet ? null : new ConsoleLog(logInterval);
+        SimulationMetrics metrics = engine instanceof GridEngine ? new SimulationMetrics(scheduler, sink) : null;
+        if (metrics != null && jmx) metrics.register("headless-" + config.seed);
+        if (metrics != null && metricsEvery > 0) metrics.startReporting(metricsEvery, System.out);
+        long start = System.nanoTime();
+        // --steps is the length of the whole run, so a resumed run stops where the original one would have
+        for (int i = first; i < steps; i++) {
+            engine.step();
+            if (metrics != null) metrics.recordStep((GridEngine) engine);
+            if (log != null) log.step(i, engine.getGlobalTemperature());
+            long outputStart = System.nanoTime();
+            sink.writeStep(i + 1, engine);
+            if (metrics != null) metrics.recordOutput(System.nanoTime() - outputStart);
+            if (checkpoints != null && checkpointEvery > 0 && (i + 1) % checkpointEvery == 0) {
+                checkpoints.save((GridEngine) engine, sink); // Written once the output has caught up
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int ran = Math.max(0, steps - first);
+        System.out.printf("Ran %d steps in %.3f s (%.1f steps/s)%n", ran, seconds, ran / seconds);
+        sink.close();
+        if (checkpoints != null) {
+            checkpoints.await(); // The last periodic checkpoint must not overlap the final one
+            checkpoints.save((GridEngine) engine);
+            checkpoints.close();
+            System.out.println("Checkpoint saved to " + checkpointPath + " at step " + engine.getNumSteps()
+                    + (checkpoints.getSkipped() > 0 ? " (" + checkpoints.getSkipped() + " skipped while busy)" : ""));
+        }
+        if (metrics != null) {
+            System.out.print(metrics.format());
+            metrics.close();
+        }
+        scheduler.close();
+    }
+
+    // Options setting a parameter of the run, which a checkpoint saves
+    private static final Set<String> RUN_PARAMETERS = Set.of("--rows", "--cols", "--size", "--max-age",
+            "--diffuse-factor", "--luminosity", "--luminosity-schedule", "--albedo-black", "--albedo-white",
+            "--albedo-surface", "--blacks", "--whites", "--seed", "--boundary");
+
+    private static void setRunParameter(SimulationConfig config, String option, String value) {
+        switch (option) {
+            case "--rows":
+                config.rows = Integer.parseInt(value);
+                break;
+            case "--cols":
+                config.cols = Integer.parseInt(value);
+                break;
+            case "--size":
+                config.rows = config.cols = Integer.parseInt(value);
+                break;
+            case "--max-age":
+                config.maxAge = Integer.parseInt(value);
+                break;
+            case "--diffuse-factor":
+                config.diffuseFactor = Double.parseDouble(value);
+                break;
+            case "--luminosity":
+                config.solarLuminosity = Double.parseDouble(value);
+                break;
+            case "--luminosity-schedule":
+                config.luminositySchedule = LuminositySchedule.parse(value);
+                break;
+            case "--albedo-black":
+                config.albedoOfBlacks = Double.parseDouble(value);
+                break;
+            case "--albedo-white":
+                config.albedoOfWhites = Double.parseDouble(value);
+                break;
+            case "--albedo-surface":
+                config.albedoOfSurface = Double.parseDouble(value);
+                break;
+            case "--blacks":
+                config.percentageOfBlacks = Integer.parseInt(value);
+                break;
+            case "--whites":
+                config.percentageOfWhites = Integer.parseInt(value);
+                break;
+            case "--seed":
+                config.seed = Long.parseLong(value);
+                break;
+            case "--boundary":
+                config.boundary = Boundary.parse(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Not a run parameter: " + option);
+        }
+    }
+
+    private static Object runParameter(SimulationConfig config, String option) {
+        switch (option) {
+            case "--rows": return config.rows;
+            case "--cols": return config.cols;
+            case "--size": return config.rows + "x" + config.cols;
+            case "--max-age": return config.maxAge;
+            case "--diffuse-factor": return config.diffuseFactor;
+            case "--luminosity": return config.solarLuminosity;
+            case "--luminosity-schedule": return config.luminositySchedule;
+            case "--albedo-black": return config.albedoOfBlacks;
+            case "--albedo-white": return config.albedoOfWhites;
+            case "--albedo-surface": return config.albedoOfSurface;
+            case "--blacks": return config.percentageOfBlacks;
+            case "--whites": return config.percentageOfWhites;
+            case "--seed": return config.seed;
+            case "--boundary": return config.boundary;
+            default: throw new IllegalArgumentException("Not a run parameter: " + option);
+        }
+    }
+
+    // A resumed run takes its parameters from the checkpoint. Giving them again is fine (rerunning the same
+    // command with --resume), giving other values is refused rather than ignored.
+    private static boolean matchesCheckpoint(List<String> runParameters, SimulationConfig saved, String path) {
+        boolean matches = true;
+        for (int p = 0; p < runParameters.size(); p += 2) {
+            String option = runParameters.get(p);
+            SimulationConfig given = saved.copy();
+            setRunParameter(given, option, runParameters.get(p + 1));
+            Object savedValue = runParameter(saved, option);
+            if (!Objects.equals(runParameter(given, option), savedValue)) {
+                System.err.println(option + " " + runParameters.get(p + 1) + " conflicts with the checkpoint " + path
+                        + ", which has " + (savedValue == null ? "none" : savedValue));
+                matches = false;
+            }
+        }
+        return matches;
+    }
+
+    private static Checkpoint readCheckpoint(String path) {
+        try {
+            return Checkpoint.read(Paths.get(path));
+        } catch (IOException e) {
+            System.err.println("Cannot resume from " + path + ": " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    static Simulation createEngine(String backend, SimulationConfig config, StepScheduler scheduler) {
+        switch (backend) {
+            case "grid":
+                return new GridEngine(config, scheduler);
+            case "vector":
+                return new GridEngine(config, scheduler, TemperatureKernel.vector());
+            case "objects":
+                return new SimulationEngine(config);
+            default:
+                throw new IllegalArgumentException("Unknown backend: " + backend + " (expected grid, vector or objects)");
+        }
+    }
+
+    static TrajectorySink createSink(String format, String output, int snapshotEvery) {
+        switch (format) {
+            case "csv":
+                return new FileService(output);
+            case "binary":
+                return new BinaryTrajectoryWriter(output, snapshotEvery);
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format + " (expected csv or binary)");
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: java daisyworld.HeadlessSimulation [--steps N] [--rows N] [--cols N] [--size N]"
+                + " [--max-age N] [--diffuse-factor F] [--luminosity L] [--luminosity-schedule SPEC] [--albedo-black A]"
+                + " [--albedo-white A] [--albedo-surface A] [--blacks PCT] [--whites PCT] [--output FILE]"
+                + " [--backend grid|vector|objects] [--threads N] [--seed S] [--format csv|binary] [--snapshot-every N]"
+                + " [--boundary closed|torus] [--active-set] [--off-heap] [--grid-file PATH] [--checkpoint PATH] [--checkpoint-every N]"
+                + " [--resume PATH] [--log-interval MS] [--metrics-every S] [--jmx] [--quiet]");
+    }
+}
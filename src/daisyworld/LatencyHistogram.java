@@ -0,0 +1,62 @@
+package daisyworld;
+
+import java.util.Arrays;
+
+// Histogram of latencies in nanoseconds without keeping the samples. Buckets grow in powers of two and
+// each power of two is split into SUB_BUCKETS equal parts, so a percentile is exact to within 1/8 (12.5%)
+// whatever the range. Recorded by one thread and read by others (JMX, periodic dumps), hence synchronized.
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final long[] counts = new long[SUB_BUCKETS + (Long.SIZE - SUB_BITS) * SUB_BUCKETS];
+    private long count = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+
+    public synchronized void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts[bucket(nanos)]++;
+        count++;
+        totalNanos += nanos;
+        if (nanos > maxNanos) maxNanos = nanos;
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos)) - SUB_BITS;
+        int sub = (int) (nanos >>> shift) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+    }
+
+    // Largest value that falls in a bucket
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+    // Smallest latency that at least a fraction q (0..1) of the samples do not exceed, 0 if empty
+    public synchronized long percentile(double q) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int b = 0; b < counts.length; b++) {
+            seen += counts[b];
+            if (seen >= rank) return Math.min(upperBound(b), maxNanos);
+        }
+        return maxNanos;
+    }
+
+    public synchronized long getCount() {return count;}
+    public synchronized long getMaxNanos() {return maxNanos;}
+    public synchronized double getMeanNanos() {return count == 0 ? 0 : (double) totalNanos / count;}
+
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+}
@@ -0,0 +1,160 @@
+package daisyworld;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Solar luminosity as a function of the step number, for runs under a changing sun (the classic Daisyworld
+// experiment ramps it up slowly). Only the points are kept: the luminosity of a step is interpolated between
+// the two points around it, found by binary search, so a schedule reaching far into a run costs no memory
+// and looking a step up allocates nothing. After the last point the luminosity stays at its final value.
+//
+// Specs (see parse): "0.8" constant, "ramp:FROM:TO:STEPS" linear from step 0 to STEPS, "points:S:L,S:L,..."
+// piecewise linear through (step, luminosity) points, "file:PATH" the same points read from a file of
+// "step,luminosity" lines. A CSV written by FileService also works, through its Step and Luminosity columns.
+public final class LuminositySchedule {
+    private final String spec;
+    private final int[] steps;            // Increasing
+    private final double[] luminosities;  // At the same index as its step
+
+    private LuminositySchedule(String spec, int[] steps, double[] luminosities) {
+        this.spec = spec;
+        this.steps = steps;
+        this.luminosities = luminosities;
+    }
+
+    public static LuminositySchedule constant(double luminosity) {
+        return new LuminositySchedule(Double.toString(luminosity), new int[]{0}, new double[]{luminosity});
+    }
+
+    public static LuminositySchedule ramp(double from, double to, int steps) {
+        return piecewise("ramp:" + from + ':' + to + ':' + steps, new int[]{0, steps}, new double[]{from, to});
+    }
+
+    // Linear between consecutive points, held before the first and after the last one. Steps must increase.
+    public static LuminositySchedule piecewise(String spec, int[] steps, double[] luminosities) {
+        if (steps.length == 0 || steps.length != luminosities.length)
+            throw new IllegalArgumentException("Luminosity schedule needs one luminosity per point: " + spec);
+        for (int p = 0; p < steps.length; p++) {
+            if (steps[p] < 0 || (p > 0 && steps[p] <= steps[p - 1]))
+                throw new IllegalArgumentException("Luminosity schedule steps must be increasing and not negative: " + spec);
+            if (!Double.isFinite(luminosities[p]))
+                throw new IllegalArgumentException("Luminosity must be a finite number: " + spec);
+        }
+        return new LuminositySchedule(spec, steps.clone(), luminosities.clone());
+    }
+
+    public static LuminositySchedule parse(String spec) {
+        try {
+            if (spec.startsWith("ramp:")) {
+                String[] p = spec.split(":");
+                if (p.length != 4) throw new IllegalArgumentException("Expected ramp:FROM:TO:STEPS: " + spec);
+                return ramp(Double.parseDouble(p[1]), Double.parseDouble(p[2]), Integer.parseInt(p[3]));
+            }
+            if (spec.startsWith("points:")) {
+                String[] points = spec.substring("points:".length()).split(",");
+                int[] steps = new int[points.length];
+                double[] luminosities = new double[points.length];
+                for (int i = 0; i < points.length; i++) {
+                    String[] p = points[i].split(":");
+                    if (p.length != 2) throw new IllegalArgumentException("Expected STEP:LUMINOSITY: " + points[i]);
+                    steps[i] = Integer.parseInt(p[0].trim());
+                    luminosities[i] = Double.parseDouble(p[1].trim());
+                }
+                return piecewise(spec, steps, luminosities);
+            }
+            if (spec.startsWith("file:")) {
+                return read(Paths.get(spec.substring("file:".length())));
+            }
+            return constant(Double.parseDouble(spec));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad luminosity schedule " + spec + ": " + e.getMessage());
+        }
+    }
+
+    // Points from a file: "step,luminosity" lines, '#' comments, and optionally a header naming the
+    // Step and Luminosity columns (as in the CSV output of a run, which replays its luminosity)
+    static LuminositySchedule read(Path file) {
+        List<Integer> steps = new ArrayList<>();
+        List<Double> luminosities = new ArrayList<>();
+        int stepColumn = 0;
+        int luminosityColumn = 1;
+        boolean first = true;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] f = line.split(",");
+                if (first && Character.isLetter(line.charAt(0))) {
+                    stepColumn = column(f, "Step", file);
+                    luminosityColumn = column(f, "Luminosity", file);
+                    first = false;
+                    continue;
+                }
+                first = false;
+                if (f.length <= Math.max(stepColumn, luminosityColumn))
+                    throw new IllegalArgumentException("Missing columns in " + file + ": " + line);
+                steps.add(Integer.parseInt(f[stepColumn].trim()));
+                luminosities.add(Double.parseDouble(f[luminosityColumn].trim()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read luminosity schedule " + file, e);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad luminosity schedule " + file + ": " + e.getMessage());
+        }
+        int[] s = new int[steps.size()];
+        double[] l = new double[s.length];
+        for (int i = 0; i < s.length; i++) {
+            s[i] = steps.get(i);
+            l[i] = luminosities.get(i);
+        }
+        return piecewise("file:" + file, s, l);
+    }
+
+    private static int column(String[] header, String name, Path file) {
+        for (int c = 0; c < header.length; c++) {
+            if (header[c].trim().equalsIgnoreCase(name)) return c;
+        }
+        throw new IllegalArgumentException("No " + name + " column in " + file);
+    }
+
+    // Luminosity the patches are heated with to reach the given step
+    public double luminosity(int step) {
+        int last = steps.length - 1;
+        step = Math.min(step, steps[last]);
+        if (step <= steps[0]) return luminosities[0];
+        // Interpolate from the point before the step, so a step on a point ends the segment leading to it
+        int found = Arrays.binarySearch(steps, step);
+        int p = found >= 0 ? found - 1 : -found - 2;
+        double f = (double) (step - steps[p]) / (steps[p + 1] - steps[p]);
+        return luminosities[p] + f * (luminosities[p + 1] - luminosities[p]);
+    }
+
+    // The points, for saving the schedule with a checkpoint (piecewise makes it again)
+    int[] getSteps() {return steps.clone();}
+    double[] getLuminosities() {return luminosities.clone();}
+
+    // Last step at which the luminosity still changes
+    public int getLastStep() {return steps[steps.length - 1];}
+
+    // Same luminosity at every step, however the points were written
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof LuminositySchedule)) return false;
+        LuminositySchedule other = (LuminositySchedule) o;
+        return Arrays.equals(steps, other.steps) && Arrays.equals(luminosities, other.luminosities);
+    }
+
+    @Override
+    public int hashCode() {return 31 * Arrays.hashCode(steps) + Arrays.hashCode(luminosities);}
+
+    @Override
+    public String toString() {return spec;}
+}
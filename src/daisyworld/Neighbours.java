@@ -0,0 +1,50 @@
+package daisyworld;
+
+// Index of the patch next to patch i in each direction under the run's Boundary: -1 past a closed edge,
+// the patch on the opposite edge on a torus. Used by the breeding passes, which only look at the
+// neighbours of occupied patches; the temperature loops read TileHalos instead.
+final class Neighbours {
+    private final int rows;
+    private final int cols;
+    private final boolean wrap;
+
+    Neighbours(int rows, int cols, Boundary boundary) {
+        this.rows = rows;
+        this.cols = cols;
+        this.wrap = boundary == Boundary.TORUS;
+    }
+
+    int up(int i, int row) {
+        return row > 0 ? i - cols : (wrap ? i + (rows - 1) * cols : -1);
+    }
+
+    int down(int i, int row) {
+        return row < rows - 1 ? i + cols : (wrap ? i - (rows - 1) * cols : -1);
+    }
+
+    int left(int i, int col) {
+        return col > 0 ? i - 1 : (wrap ? i + cols - 1 : -1);
+    }
+
+    int right(int i, int col) {
+        return col < cols - 1 ? i + 1 : (wrap ? i - (cols - 1) : -1);
+    }
+
+    // Patch seeded by a daisy on patch i with the given BreedingKernel action, -1 if it seeds none
+    int target(int i, byte action) {
+        int row = i / cols;
+        int col = i - row * cols;
+        switch (action) {
+            case BreedingKernel.SEED_UP:
+                return up(i, row);
+            case BreedingKernel.SEED_DOWN:
+                return down(i, row);
+            case BreedingKernel.SEED_LEFT:
+                return left(i, col);
+            case BreedingKernel.SEED_RIGHT:
+                return right(i, col);
+            default:
+                return -1;
+        }
+    }
+}
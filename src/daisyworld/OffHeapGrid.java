@@ -0,0 +1,154 @@
+package daisyworld;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Grid storage outside the Java heap, in direct buffers or in buffers mapped to a file, so very large
+// worlds neither need a huge heap nor make the GC scan it. Each attribute is split into segments of
+// SEGMENT_CELLS cells because a single buffer holds at most 2 GiB.
+//
+// A file only backs the memory of a run, like swap: it is never flushed on purpose nor read back, and a
+// run is saved and resumed through its Checkpoint. File layout (little-endian): header (HEADER_BYTES):
+// magic, version, rows, cols, padding; then two rows*cols temperature buffers (doubles), colors and ages
+// (bytes).
+final class OffHeapGrid implements GridStorage {
+    static final int MAGIC = 0x48475744; // "DWGH"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int SEGMENT_SHIFT = 27;
+    static final int SEGMENT_CELLS = 1 << SEGMENT_SHIFT; // 1 GiB of temperatures per segment
+    private static final int SEGMENT_MASK = SEGMENT_CELLS - 1;
+
+    final int rows;
+    final int cols;
+    private final int size;
+    private final DoubleBuffer[][] temperatures = new DoubleBuffer[2][];
+    private final ByteBuffer[] color;
+    private final ByteBuffer[] age;
+    private final ByteBuffer[] action; // Breeding scratch, never written to the file
+    private int current = 0; // Which of the two temperature buffers is the current one
+
+    private OffHeapGrid(int rows, int cols, FileChannel channel) throws IOException {
+        this.rows = rows;
+        this.cols = cols;
+        this.size = rows * cols;
+        if (channel != null) {
+            map(channel, 0, HEADER_BYTES).putInt(0, MAGIC).putInt(4, VERSION).putInt(8, rows).putInt(12, cols);
+        }
+        long offset = HEADER_BYTES;
+        for (int t = 0; t < 2; t++) {
+            ByteBuffer[] bytes = segments(channel, offset, Double.BYTES);
+            temperatures[t] = new DoubleBuffer[bytes.length];
+            for (int s = 0; s < bytes.length; s++) {
+                temperatures[t][s] = bytes[s].asDoubleBuffer();
+            }
+            offset += (long) size * Double.BYTES;
+        }
+        color = segments(channel, offset, 1);
+        age = segments(channel, offset + size, 1);
+        action = segments(null, 0, 1);
+    }
+
+    // A grid in direct memory, empty and at 0 degrees like a new Grid
+    static OffHeapGrid allocate(int rows, int cols) {
+        try {
+            OffHeapGrid grid = new OffHeapGrid(rows, cols, null);
+            grid.clearColors();
+            return grid;
+        } catch (IOException e) {
+            throw new AssertionError(e); // Nothing is mapped without a channel
+        }
+    }
+
+    // A new empty grid mapped to file, replacing any existing file
+    static OffHeapGrid map(Path file, int rows, int cols) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OffHeapGrid grid = new OffHeapGrid(rows, cols, channel);
+            grid.clearColors();
+            return grid;
+        }
+    }
+
+    // Bytes of the file (or of direct memory) a grid of this size takes
+    static long bytesFor(int rows, int cols) {
+        return HEADER_BYTES + (long) rows * cols * (2 * Double.BYTES + 2);
+    }
+
+    private ByteBuffer[] segments(FileChannel channel, long offset, int bytesPerCell) throws IOException {
+        ByteBuffer[] segments = new ByteBuffer[(size + SEGMENT_CELLS - 1) >>> SEGMENT_SHIFT];
+        for (int s = 0; s < segments.length; s++) {
+            int cells = Math.min(SEGMENT_CELLS, size - s * SEGMENT_CELLS);
+            int bytes = cells * bytesPerCell;
+            long position = offset + (long) s * SEGMENT_CELLS * bytesPerCell;
+            segments[s] = channel == null ? ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN)
+                    : map(channel, position, bytes);
+        }
+        return segments;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, int bytes) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, position, bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void clearColors() {
+        for (ByteBuffer segment : color) {
+            for (int i = 0; i < segment.capacity(); i++) {
+                segment.put(i, Grid.NONE);
+            }
+        }
+    }
+
+    @Override public int getRows() {return rows;}
+    @Override public int getCols() {return cols;}
+    @Override public int index(int row, int col) {return row * cols + col;}
+    @Override public int size() {return size;}
+
+    @Override
+    public double getTemperature(int i) {
+        return temperatures[current][i >>> SEGMENT_SHIFT].get(i & SEGMENT_MASK);
+    }
+
+    @Override
+    public void setTemperature(int i, double t) {
+        temperatures[current][i >>> SEGMENT_SHIFT].put(i & SEGMENT_MASK, t);
+    }
+
+    @Override
+    public void setNextTemperature(int i, double t) {
+        temperatures[current ^ 1][i >>> SEGMENT_SHIFT].put(i & SEGMENT_MASK, t);
+    }
+
+    @Override
+    public void swapTemperature() {
+        current ^= 1;
+    }
+
+    @Override public boolean hasDaisy(int i) {return getColor(i) != Grid.NONE;}
+    @Override public int getColor(int i) {return color[i >>> SEGMENT_SHIFT].get(i & SEGMENT_MASK);}
+    @Override public int getAge(int i) {return age[i >>> SEGMENT_SHIFT].get(i & SEGMENT_MASK);}
+
+    @Override
+    public void setAge(int i, int daisyAge) {
+        age[i >>> SEGMENT_SHIFT].put(i & SEGMENT_MASK, (byte) daisyAge);
+    }
+
+    @Override
+    public void setDaisy(int i, int daisyColor, int daisyAge) {
+        color[i >>> SEGMENT_SHIFT].put(i & SEGMENT_MASK, (byte) daisyColor);
+        setAge(i, daisyAge);
+    }
+
+    @Override
+    public void clearDaisy(int i) {
+        setDaisy(i, Grid.NONE, 0);
+    }
+
+    @Override public byte getAction(int i) {return action[i >>> SEGMENT_SHIFT].get(i & SEGMENT_MASK);}
+    @Override public void setAction(int i, byte a) {action[i >>> SEGMENT_SHIFT].put(i & SEGMENT_MASK, a);}
+}
@@ -0,0 +1,268 @@
+package daisyworld;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Runs every combination of the given parameters as independent worlds, several at a time, and writes
+// all of them into one CSV whose rows are keyed by run number and parameter set. A run's rows are written
+// once it is complete, so a run that fails leaves no rows behind.
+//
+// Usage: java daisyworld.ParameterSweep --luminosity 0.6,1.0,1.4 --albedo-black 0.1:0.4:0.05 --seeds 1,2,3 --steps 1000
+// Each parameter takes a comma separated list or an inclusive range from:to:step.
+// With --workers N (or --port P for workers started by hand) the runs are spread over SweepWorker processes
+// by a SweepCoordinator instead of threads of this process; the output is the same.
+public class ParameterSweep {
+    public static final String SWEEP_HEADER = "Run,Seed,PercentBlacks,PercentWhites," + FileService.CSV_HEADER;
+
+    private static final int BLOCK_CHARS = 64 * 1024; // Rows of a run handed to the output at a time
+
+    private final List<SimulationConfig> runs;
+    private final int steps;
+
+    public ParameterSweep(List<SimulationConfig> runs, int steps) {
+        this.runs = runs;
+        this.steps = steps;
+    }
+
+    // Every combination of the parameter values, in a fixed order. Other settings come from base.
+    public static List<SimulationConfig> combinations(SimulationConfig base, double[] luminosities, double[] albedoBlacks, double[] albedoWhites,
+                                                      double[] albedoSurfaces, int[] percentBlacks, int[] percentWhites,
+                                                      long[] seeds) {
+        List<SimulationConfig> runs = new ArrayList<>();
+        for (double luminosity : luminosities)
+            for (double albedoBlack : albedoBlacks)
+                for (double albedoWhite : albedoWhites)
+                    for (double albedoSurface : albedoSurfaces)
+                        for (int blacks : percentBlacks)
+                            for (int whites : percentWhites)
+                                for (long seed : seeds) {
+                                    SimulationConfig c = base.copy();
+                                    c.solarLuminosity = luminosity;
+                                    c.albedoOfBlacks = albedoBlack;
+                                    c.albedoOfWhites = albedoWhite;
+                                    c.albedoOfSurface = albedoSurface;
+                                    c.percentageOfBlacks = blacks;
+                                    c.percentageOfWhites = whites;
+                                    c.seed = seed;
+                                    runs.add(c);
+                                }
+        return runs;
+    }
+
+    // Run all worlds on `threads` threads, one world per thread at a time, writing to output.
+    // Returns the runs that failed, whose rows are missing from the output.
+    public List<Integer> run(String output, int threads) throws InterruptedException {
+        AtomicInteger finished = new AtomicInteger();
+        List<Integer> failed = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (FileService out = new FileService(output, SWEEP_HEADER)) {
+            out.writeCSVHeader();
+            List<Future<?>> results = new ArrayList<>(runs.size());
+            for (int r = 0; r < runs.size(); r++) {
+                int run = r;
+                results.add(pool.submit(() -> {
+                    StringBuilder rows = new StringBuilder();
+                    runWorld(run, runs.get(run), steps, rows::append);
+                    out.writeLines(rows);
+                    int done = finished.incrementAndGet();
+                    System.out.printf("Run %d finished (%d/%d)%n", run, done, runs.size());
+                }));
+            }
+            for (int r = 0; r < results.size(); r++) {
+                try {
+                    results.get(r).get();
+                } catch (ExecutionException e) {
+                    System.err.printf("Run %d failed: %s%n", r, e.getCause());
+                    failed.add(r);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return failed;
+    }
+
+    // One world, isolated in its own engine, stepped on the calling thread. Rows go to out in blocks.
+    static void runWorld(int run, SimulationConfig config, int steps, Consumer<CharSequence> out) {
+        GridEngine engine = new GridEngine(config);
+        engine.setup();
+        StringBuilder block = new StringBuilder(BLOCK_CHARS + 256);
+        appendRow(block, run, 0, engine);
+        for (int i = 0; i < steps; i++) {
+            engine.step();
+            appendRow(block, run, i + 1, engine);
+            if (block.length() >= BLOCK_CHARS) {
+                out.accept(block);
+                block.setLength(0);
+            }
+        }
+        out.accept(block);
+    }
+
+    private static void appendRow(StringBuilder block, int run, int step, Simulation engine) {
+        SimulationConfig c = engine.getConfig();
+        block.append(run).append(',').append(c.seed).append(',').append(c.percentageOfBlacks).append(',')
+                .append(c.percentageOfWhites).append(',').append(step).append(',').append(engine.getGlobalTemperature())
+                .append(',').append(engine.getBlackDaisies()).append(',').append(engine.getWhiteDaisies()).append(',')
+                .append(engine.getSolarLuminosity()).append(',').append(c.albedoOfBlacks).append(',').append(c.albedoOfWhites)
+                .append(',').append(c.albedoOfSurface).append('\n');
+    }
+
+    // "a,b,c" or "from:to:step" (inclusive)
+    static double[] parseDoubles(String spec) {
+        if (spec.contains(":")) {
+            String[] p = spec.split(":");
+            double from = Double.parseDouble(p[0]);
+            double to = Double.parseDouble(p[1]);
+            double step = Double.parseDouble(p[2]);
+            if (step <= 0) throw new IllegalArgumentException("Range step must be positive: " + spec);
+            int n = (int) Math.floor((to - from) / step + 1e-9) + 1;
+            double[] values = new double[Math.max(0, n)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Math.round((from + i * step) * 1e9) / 1e9; // Avoid 0.30000000000000004 in the output
+            }
+            return values;
+        }
+        String[] p = spec.split(",");
+        double[] values = new double[p.length];
+        for (int i = 0; i < p.length; i++) values[i] = Double.parseDouble(p[i].trim());
+        return values;
+    }
+
+    static int[] parseInts(String spec) {
+        double[] d = parseDoubles(spec);
+        int[] values = new int[d.length];
+        for (int i = 0; i < d.length; i++) values[i] = (int) Math.round(d[i]);
+        return values;
+    }
+
+    static long[] parseLongs(String spec) {
+        String[] p = spec.split(",");
+        long[] values = new long[p.length];
+        for (int i = 0; i < p.length; i++) values[i] = Long.parseLong(p[i].trim());
+        return values;
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        SimulationConfig defaults = new SimulationConfig();
+        double[] luminosities = {defaults.solarLuminosity};
+        double[] albedoBlacks = {defaults.albedoOfBlacks};
+        double[] albedoWhites = {defaults.albedoOfWhites};
+        double[] albedoSurfaces = {defaults.albedoOfSurface};
+        int[] percentBlacks = {defaults.percentageOfBlacks};
+        int[] percentWhites = {defaults.percentageOfWhites};
+        long[] seeds = {1};
+        int steps = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String output = "sweep_output.csv";
+        int workers = -1;
+        int port = 0;
+        int batch = 4;
+        int retries = 2;
+        int workerTimeout = 600;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--rows":
+                    defaults.rows = Integer.parseInt(args[++i]);
+                    break;
+                case "--cols":
+                    defaults.cols = Integer.parseInt(args[++i]);
+                    break;
+                case "--size":
+                    defaults.rows = defaults.cols = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-age":
+                    defaults.maxAge = Integer.parseInt(args[++i]);
+                    break;
+                case "--diffuse-factor":
+                    defaults.diffuseFactor = Double.parseDouble(args[++i]);
+                    break;
+                case "--boundary":
+                    defaults.boundary = Boundary.parse(args[++i]);
+                    break;
+                case "--active-set":
+                    defaults.activeSet = true;
+                    break;
+                case "--luminosity":
+                    luminosities = parseDoubles(args[++i]);
+                    break;
+                case "--albedo-black":
+                    albedoBlacks = parseDoubles(args[++i]);
+                    break;
+                case "--albedo-white":
+                    albedoWhites = parseDoubles(args[++i]);
+                    break;
+                case "--albedo-surface":
+                    albedoSurfaces = parseDoubles(args[++i]);
+                    break;
+                case "--blacks":
+                    percentBlacks = parseInts(args[++i]);
+                    break;
+                case "--whites":
+                    percentWhites = parseInts(args[++i]);
+                    break;
+                case "--seeds":
+                    seeds = parseLongs(args[++i]);
+                    break;
+                case "--steps":
+                    steps = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--output":
+                    output = args[++i];
+                    break;
+                case "--workers":
+                    workers = Integer.parseInt(args[++i]);
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    if (workers < 0) workers = 0;
+                    break;
+                case "--batch":
+                    batch = Integer.parseInt(args[++i]);
+                    break;
+                case "--retries":
+                    retries = Integer.parseInt(args[++i]);
+                    break;
+                case "--worker-timeout":
+                    workerTimeout = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.err.println("Usage: java daisyworld.ParameterSweep [--rows N] [--cols N] [--size N] [--max-age N]"
+                            + " [--diffuse-factor F] [--boundary closed|torus] [--active-set] [--luminosity L,..] [--albedo-black A,..|from:to:step]"
+                            + " [--albedo-white ..] [--albedo-surface ..] [--blacks PCT,..] [--whites PCT,..]"
+                            + " [--seeds S,..] [--steps N] [--threads N] [--output FILE]"
+                            + " [--workers N] [--port P] [--batch N] [--retries N] [--worker-timeout S]");
+                    System.exit(1);
+            }
+        }
+
+        List<SimulationConfig> runs = combinations(defaults, luminosities, albedoBlacks, albedoWhites, albedoSurfaces,
+                percentBlacks, percentWhites, seeds);
+        long start = System.nanoTime();
+        List<Integer> failed;
+        if (workers >= 0) {
+            System.out.printf("Sweeping %d worlds of %d steps on %d local workers into %s%n", runs.size(), steps, workers, output);
+            failed = new SweepCoordinator(runs, steps, batch, retries + 1, workerTimeout).run(output, workers, port);
+        } else {
+            System.out.printf("Sweeping %d worlds of %d steps on %d threads into %s%n", runs.size(), steps, threads, output);
+            failed = new ParameterSweep(runs, steps).run(output, threads);
+        }
+        if (!failed.isEmpty()) {
+            System.err.println("Runs missing from the output: " + failed);
+            System.exit(2);
+        }
+        System.out.printf("Done in %.3f s%n", (System.nanoTime() - start) / 1e9);
+    }
+}
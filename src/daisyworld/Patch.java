@@ -1,15 +1,19 @@
+package daisyworld;
+
 import java.util.List;
 
 // Patch class representing each patch of temperature
 class Patch {
     private final int [] dirx = {-1,1,0,0};
     private final int [] diry = {0,0,-1,1};
+    private final SimulationEngine engine;
     private final int row;
     private final int col;
     private double temperature = 0;
     private Daisy daisy=null;
 
-    public Patch(int row, int col) {
+    public Patch(SimulationEngine engine, int row, int col) {
+        this.engine = engine;
         this.row = row;
         this.col = col;
     }
@@ -19,7 +23,7 @@ class Patch {
 
         if (!hasDaisy()) {
             // If there are no daisies on this patch
-            absorbedLuminosity = (1 - DaisySimulationGUI.ALBEDO_OF_SURFACE) * solarLuminosity; //  albedo-of-surface : 0.4
+            absorbedLuminosity = (1 - engine.getConfig().albedoOfSurface) * solarLuminosity; //  albedo-of-surface : 0.4
         } else {
             // If there is at least one daisy, get the albedo from the daisies here
             Daisy currentDaisy = daisy; // Assuming only one daisy is present in this patch
@@ -38,19 +42,20 @@ class Patch {
         temperature = (temperature + localHeating) / 2;
     }
 
+    // Give a share of the temperature to each neighbour, in place: neighbours later in the scan have
+    // already received theirs (the original model's order-dependent diffusion, unlike DiffusionKernel)
     public void diffuse()
     {
-        double df=DaisySimulationGUI.DIFFUSE_FACTOR;
+        double df=engine.getConfig().diffuseFactor;
         double df_amount = temperature * df;
         temperature = temperature * df;
         for(int i=0;i<4;i++)
         {
             // Search in 4 dirs
-            int newRow = row + dirx[i];
-            int newCol = col + diry[i];
-            if(newRow >= 0 && newRow < DaisySimulationGUI.ROWS && newCol >= 0 && newCol < DaisySimulationGUI.COLS)
+            Patch neighbour = engine.getNeighbour(row + dirx[i], col + diry[i]);
+            if(neighbour != null)
             {
-                DaisySimulationGUI.patches[newRow][newCol].setTemperature(DaisySimulationGUI.patches[newRow][newCol].getTemperature()+(df_amount/4));
+                neighbour.setTemperature(neighbour.getTemperature()+(df_amount/4));
             }
         }
     }
@@ -59,6 +64,8 @@ class Patch {
     public Daisy getDaisy() {
         return daisy;
     }
+    public int getRow() {return row;}
+    public int getCol() {return col;}
     public double getTemperature() {return temperature;}
     public void setTemperature(double temperature) {this.temperature = temperature;}
     public void setDaisy(Daisy daisy) {this.daisy = daisy;}
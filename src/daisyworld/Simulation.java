@@ -0,0 +1,19 @@
+package daisyworld;
+
+// Common view of a simulated daisy world, independent of how the grid is stored
+public interface Simulation {
+    int NO_DAISY = -1;
+
+    void setup(); // Seed daisies and compute the initial temperature
+    void step();  // Advance the world by one step
+
+    SimulationConfig getConfig();
+    int getNumSteps();
+    double getGlobalTemperature();
+    double getSolarLuminosity(); // Luminosity the current temperatures were computed with
+    int getBlackDaisies();
+    int getWhiteDaisies();
+    int getDaisyColor(int row, int col); // 1 for black, 0 for white, NO_DAISY for an empty patch
+    int getDaisyAge(int row, int col);   // 0 for an empty patch
+    double getTemperature(int row, int col);
+}
@@ -0,0 +1,87 @@
+package daisyworld;
+
+import java.util.SplittableRandom;
+
+// Parameters of a single simulation run
+public class SimulationConfig {
+    public static final int MAX_AGE_LIMIT = Byte.MAX_VALUE; // Ages are stored in a byte per patch
+
+    public int rows = 30;      // Number of rows in the patch grid
+    public int cols = 30;      // Number of columns in the patch grid
+    public int maxAge = 25;    // Maximum age of daisies
+    public double diffuseFactor = 0.5;
+    public boolean activeSet = false; // Breed over a list of occupied patches instead of scanning the grid
+    public boolean offHeap = false;   // Keep the grid in direct memory instead of Java arrays
+    public String gridFile = null;    // Map the off-heap grid to this file instead
+    public Boundary boundary = Boundary.CLOSED;
+    public double solarLuminosity = 0.6;
+    public LuminositySchedule luminositySchedule = null; // Luminosity per step instead of solarLuminosity
+    public double albedoOfBlacks = 0.25;
+    public double albedoOfWhites = 0.75;
+    public double albedoOfSurface = 0.4;
+    public int percentageOfBlacks = 20;
+    public int percentageOfWhites = 20;
+    public long seed = new SplittableRandom().nextLong(); // Fix it to replay a run exactly
+
+    public SimulationConfig copy() {
+        SimulationConfig c = new SimulationConfig();
+        c.rows = rows;
+        c.cols = cols;
+        c.maxAge = maxAge;
+        c.diffuseFactor = diffuseFactor;
+        c.activeSet = activeSet;
+        c.offHeap = offHeap;
+        c.gridFile = gridFile;
+        c.boundary = boundary;
+        c.solarLuminosity = solarLuminosity;
+        c.luminositySchedule = luminositySchedule;
+        c.albedoOfBlacks = albedoOfBlacks;
+        c.albedoOfWhites = albedoOfWhites;
+        c.albedoOfSurface = albedoOfSurface;
+        c.percentageOfBlacks = percentageOfBlacks;
+        c.percentageOfWhites = percentageOfWhites;
+        c.seed = seed;
+        return c;
+    }
+
+    // Reject parameters the engines cannot run with
+    public void validate() {
+        if (rows <= 0 || cols <= 0)
+            throw new IllegalArgumentException("Grid must have at least one row and column: " + rows + "x" + cols);
+        if ((long) rows * cols > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Grid too large for one world: " + rows + "x" + cols);
+        if (maxAge <= 0 || maxAge > MAX_AGE_LIMIT)
+            throw new IllegalArgumentException("Max age must be between 1 and " + MAX_AGE_LIMIT + ": " + maxAge);
+        if (boundary == null)
+            throw new IllegalArgumentException("No boundary given");
+        if (activeSet && (offHeap || gridFile != null))
+            throw new IllegalArgumentException("The active set needs the on-heap grid");
+        if (percentageOfBlacks < 0 || percentageOfWhites < 0 || percentageOfBlacks + percentageOfWhites > 100)
+            throw new IllegalArgumentException("Initial daisy percentages must add up to at most 100: "
+                    + percentageOfBlacks + " + " + percentageOfWhites);
+    }
+
+    // Luminosity to heat the patches with to reach the given step
+    public double luminosityAt(int step) {
+        return luminositySchedule != null ? luminositySchedule.luminosity(step) : solarLuminosity;
+    }
+
+    // Map the luminosity combo box index to a solar luminosity (the starting one for the rising option)
+    public static double luminosityForOption(int lumiOption) {
+        switch (lumiOption) {
+            case 1:
+                return 1.0;
+            case 2:
+                return 1.4;
+            case 0:
+            case 3:
+            default:
+                return 0.6;
+        }
+    }
+
+    // Map the luminosity combo box index to a schedule, null for a constant luminosity
+    public static LuminositySchedule scheduleForOption(int lumiOption) {
+        return lumiOption == 3 ? LuminositySchedule.ramp(0.6, 1.4, 1000) : null;
+    }
+}
@@ -0,0 +1,142 @@
+package daisyworld;
+
+import java.util.SplittableRandom;
+
+// Headless simulation engine: holds the full state of one daisy world as Patch and Daisy objects.
+// Runs every phase on the calling thread with the semantics of the original model: diffusion scatters
+// into neighbours in place in scan order, and breeding draws from one random stream in the same order.
+// GridEngine diffuses from a copy of the previous temperatures and draws per cell (CellRandom), so the two
+// follow the same model but their trajectories are not bit-comparable; the grid engines are checked against
+// each other instead (EquivalenceCheck).
+public class SimulationEngine implements Simulation {
+    private final SimulationConfig config;
+    private final int rows;
+    private final int cols;
+    private final Patch[][] patches;  // 2D array of patches
+    private final SplittableRandom rand;
+
+    private int numSteps = 0;
+    private double globalTemperature = 0;
+    private double solarLuminosity;
+    int whiteDaisies = 0;
+    int blackDaisies = 0;
+
+    public SimulationEngine(SimulationConfig config) {
+        this.config = config;
+        this.rand = new SplittableRandom(config.seed);
+        config.validate();
+        this.rows = config.rows;
+        this.cols = config.cols;
+        patches = new Patch[rows][cols];  // Initialize the patch grid
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                patches[row][col] = new Patch(this, row, col);
+            }
+        }
+    }
+
+    // Setup initial conditions for the simulation
+    @Override
+    public void setup() {
+        seedRandomly(1, config.percentageOfBlacks);
+        seedRandomly(0, config.percentageOfWhites);
+        solarLuminosity = config.luminosityAt(0);
+        calculateTemperature();
+    }
+
+    private void seedRandomly(int color, int percentage) {
+        int numSeeds = (int) ((long) rows * cols * percentage / 100);
+        int seeded = 0;
+        while (seeded < numSeeds) {
+            int row = rand.nextInt(rows);
+            int col = rand.nextInt(cols);
+            if (!patches[row][col].hasDaisy()) {
+                Daisy d = new Daisy(this, color, row, col, rand.nextInt(config.maxAge));
+                patches[row][col].setDaisy(d);
+                seeded++;
+                if (color == 1) blackDaisies++;
+                else whiteDaisies++;
+            }
+        }
+    }
+
+    private void calculateTemperature() {
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                patches[row][col].calculateTemperature(solarLuminosity);
+            }
+        }
+        updateGlobalTemperature();
+    }
+
+    private void updateGlobalTemperature() {
+        double sum = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                sum += patches[row][col].getTemperature();
+            }
+        }
+        globalTemperature = sum / ((double) rows * cols);
+    }
+
+    @Override
+    public void step() {
+        solarLuminosity = config.luminosityAt(numSteps + 1);
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                patches[row][col].calculateTemperature(solarLuminosity);
+            }
+        }
+
+        // Temp Diffusion
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                patches[row][col].diffuse();
+            }
+        }
+
+        // Breeding
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                if (patches[row][col].hasDaisy())
+                    patches[row][col].getDaisy().checkSurvivability();
+            }
+        }
+
+        updateGlobalTemperature();
+        numSteps++;
+    }
+
+    // Random draws for the daisies, from the run seed
+    double nextDouble() {return rand.nextDouble();}
+
+    // Getters
+    public Patch getPatch(int row, int col) {return patches[row][col];}
+    // Patch at (row, col) past the edge wrapped around on a torus, null past a closed edge
+    public Patch getNeighbour(int row, int col) {
+        if (config.boundary == Boundary.TORUS) return patches[Math.floorMod(row, rows)][Math.floorMod(col, cols)];
+        return row >= 0 && row < rows && col >= 0 && col < cols ? patches[row][col] : null;
+    }
+    public int getRows() {return rows;}
+    public int getCols() {return cols;}
+    @Override public SimulationConfig getConfig() {return config;}
+    @Override public int getNumSteps() {return numSteps;}
+    @Override public double getGlobalTemperature() {return globalTemperature;}
+    @Override public double getSolarLuminosity() {return solarLuminosity;}
+    @Override public int getWhiteDaisies() {return whiteDaisies;}
+    @Override public int getBlackDaisies() {return blackDaisies;}
+
+    @Override
+    public int getDaisyColor(int row, int col) {
+        Patch patch = patches[row][col];
+        return patch.hasDaisy() ? patch.getDaisy().getColor() : NO_DAISY;
+    }
+
+    @Override
+    public int getDaisyAge(int row, int col) {
+        Patch patch = patches[row][col];
+        return patch.hasDaisy() ? patch.getDaisy().getAge() : 0;
+    }
+
+    @Override public double getTemperature(int row, int col) {return patches[row][col].getTemperature();}
+}
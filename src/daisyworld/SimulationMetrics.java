@@ -0,0 +1,188 @@
+package daisyworld;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+// Instrumentation of a GridEngine run: per-step latency histograms of every phase and of the output,
+// step rate, births and deaths, and the depth of the output queue. Recorded by the stepping thread after
+// each step; read through JMX (register) or printed periodically (startReporting) from other threads.
+public class SimulationMetrics implements SimulationMetricsMXBean, AutoCloseable {
+    private static final String OUTPUT = "OUTPUT";
+    private static final long RATE_WINDOW_NANOS = 1_000_000_000L;
+
+    private final StepScheduler scheduler;
+    private final TrajectorySink sink; // May be null
+    private final StepScheduler.Phase[] phases = StepScheduler.Phase.values();
+    private final long[] lastPhaseNanos = new long[phases.length];
+    private final LatencyHistogram[] histograms = new LatencyHistogram[phases.length + 1]; // Phases, then output
+
+    private volatile long steps = 0;
+    private volatile int lastBirths = 0;
+    private volatile int lastDeaths = 0;
+    private volatile long totalBirths = 0;
+    private volatile long totalDeaths = 0;
+    private volatile double meanTemperatureBare = Double.NaN;
+    private volatile double meanTemperatureWhite = Double.NaN;
+    private volatile double meanTemperatureBlack = Double.NaN;
+    private volatile long startNanos = System.nanoTime();
+    private long windowStart = startNanos;
+    private long windowSteps = 0;
+    private volatile double stepsPerSecond = 0;
+    private volatile boolean resetRequested = false; // Set by reset() on any thread, applied by recordStep
+
+    private ObjectName objectName;
+    private ScheduledExecutorService reporter;
+
+    public SimulationMetrics(StepScheduler scheduler, TrajectorySink sink) {
+        this.scheduler = scheduler;
+        this.sink = sink;
+        for (int h = 0; h < histograms.length; h++) histograms[h] = new LatencyHistogram();
+        for (StepScheduler.Phase phase : phases) lastPhaseNanos[phase.ordinal()] = scheduler.getPhaseNanos(phase);
+    }
+
+    // Record the step engine has just done, reading the phase times accumulated by the scheduler
+    public void recordStep(GridEngine engine) {
+        if (resetRequested) {
+            resetRequested = false;
+            clear();
+        }
+        for (StepScheduler.Phase phase : phases) {
+            long nanos = scheduler.getPhaseNanos(phase);
+            histograms[phase.ordinal()].record(nanos - lastPhaseNanos[phase.ordinal()]);
+            lastPhaseNanos[phase.ordinal()] = nanos;
+        }
+        lastBirths = engine.getBirths();
+        lastDeaths = engine.getDeaths();
+        totalBirths += lastBirths;
+        totalDeaths += lastDeaths;
+        meanTemperatureBare = engine.getMeanTemperatureBare();
+        meanTemperatureWhite = engine.getMeanTemperatureWhite();
+        meanTemperatureBlack = engine.getMeanTemperatureBlack();
+        steps++;
+
+        long now = System.nanoTime();
+        if (now - windowStart >= RATE_WINDOW_NANOS) {
+            stepsPerSecond = (steps - windowSteps) * 1e9 / (now - windowStart);
+            windowStart = now;
+            windowSteps = steps;
+        }
+    }
+
+    // Record the time taken to hand a step to the output
+    public void recordOutput(long nanos) {
+        histograms[phases.length].record(nanos);
+    }
+
+    @Override public long getSteps() {return steps;}
+    @Override public double getStepsPerSecond() {return stepsPerSecond;}
+    @Override public int getLastBirths() {return lastBirths;}
+    @Override public int getLastDeaths() {return lastDeaths;}
+    @Override public long getTotalBirths() {return totalBirths;}
+    @Override public long getTotalDeaths() {return totalDeaths;}
+    @Override public int getQueueDepth() {return sink == null ? 0 : sink.getQueueDepth();}
+    @Override public double getMeanTemperatureBare() {return meanTemperatureBare;}
+    @Override public double getMeanTemperatureWhite() {return meanTemperatureWhite;}
+    @Override public double getMeanTemperatureBlack() {return meanTemperatureBlack;}
+
+    @Override
+    public double getAverageStepsPerSecond() {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed <= 0 ? 0 : steps * 1e9 / elapsed;
+    }
+
+    @Override public Map<String, Double> getPhaseMeanMicros() {return perPhase(h -> h.getMeanNanos() / 1e3);}
+    @Override public Map<String, Double> getPhaseP50Micros() {return perPhase(h -> h.percentile(0.5) / 1e3);}
+    @Override public Map<String, Double> getPhaseP99Micros() {return perPhase(h -> h.percentile(0.99) / 1e3);}
+    @Override public Map<String, Double> getPhaseMaxMicros() {return perPhase(h -> h.getMaxNanos() / 1e3);}
+
+    private Map<String, Double> perPhase(ToDoubleFunction<LatencyHistogram> value) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (int h = 0; h < histograms.length; h++) {
+            values.put(name(h), value.applyAsDouble(histograms[h]));
+        }
+        return values;
+    }
+
+    private String name(int histogram) {
+        return histogram < phases.length ? phases[histogram].name() : OUTPUT;
+    }
+
+    // Called through JMX, on a thread of its own: the histograms and counters are only written by the stepping
+    // thread, so they are cleared there, when it records its next step
+    @Override
+    public void reset() {
+        resetRequested = true;
+    }
+
+    private void clear() {
+        for (LatencyHistogram histogram : histograms) histogram.reset();
+        totalBirths = 0;
+        totalDeaths = 0;
+        steps = 0;
+        startNanos = System.nanoTime();
+        windowStart = startNanos;
+        windowSteps = 0;
+        stepsPerSecond = 0;
+    }
+
+    // Summary of everything recorded so far, one line per phase
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Steps %d, %.1f steps/s (%.1f average), births %d, deaths %d (last step %d, %d),"
+                        + " output queue %d%n", steps, stepsPerSecond, getAverageStepsPerSecond(), totalBirths,
+                totalDeaths, lastBirths, lastDeaths, getQueueDepth()));
+        sb.append(String.format("  Mean temperature: bare %.2f, white daisies %.2f, black daisies %.2f%n",
+                meanTemperatureBare, meanTemperatureWhite, meanTemperatureBlack));
+        for (int h = 0; h < histograms.length; h++) {
+            LatencyHistogram histogram = histograms[h];
+            sb.append(String.format("  %-12s mean %9.1f us, p50 %9.1f us, p99 %9.1f us, max %9.1f us%n", name(h),
+                    histogram.getMeanNanos() / 1e3, histogram.percentile(0.5) / 1e3,
+                    histogram.percentile(0.99) / 1e3, histogram.getMaxNanos() / 1e3));
+        }
+        return sb.toString();
+    }
+
+    // Register with the platform MBean server, e.g. to watch a run in JConsole
+    public void register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName("daisyworld:type=SimulationMetrics,name=" + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            objectName = null;
+            System.err.println("Could not register metrics with JMX: " + e.getMessage());
+        }
+    }
+
+    // Print format() to out every periodSeconds from a background thread
+    public void startReporting(long periodSeconds, PrintStream out) {
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(() -> out.print(format()), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close() {
+        if (reporter != null) reporter.shutdownNow();
+        reporter = null;
+        if (objectName == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            System.err.println("Could not unregister metrics from JMX: " + e.getMessage());
+        }
+        objectName = null;
+    }
+}
@@ -0,0 +1,24 @@
+package daisyworld;
+
+import java.util.Map;
+
+// JMX view of SimulationMetrics, registered as daisyworld:type=SimulationMetrics,name=<run>.
+// Phase latencies are per step, in microseconds, keyed by phase name (HEATING ... AGGREGATION, OUTPUT).
+public interface SimulationMetricsMXBean {
+    long getSteps();
+    double getStepsPerSecond();        // Over the last second or so
+    double getAverageStepsPerSecond(); // Since the start or the last reset
+    int getLastBirths();
+    int getLastDeaths();
+    long getTotalBirths();
+    long getTotalDeaths();
+    int getQueueDepth();               // Output waiting for the writer thread
+    double getMeanTemperatureBare();   // Of the last step, NaN if no patch is in the class
+    double getMeanTemperatureWhite();
+    double getMeanTemperatureBlack();
+    Map<String, Double> getPhaseMeanMicros();
+    Map<String, Double> getPhaseP50Micros();
+    Map<String, Double> getPhaseP99Micros();
+    Map<String, Double> getPhaseMaxMicros();
+    void reset(); // Start counting afresh from the next step
+}
@@ -0,0 +1,134 @@
+package daisyworld;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Runs the phases of a step over row tiles of the grid. Each call to runPhase is a barrier: it only
+// returns once every tile is done, so a phase always sees the complete output of the previous one.
+// A scheduler is reused from one run to the next (one run at a time) and closed when no longer needed.
+//
+// With parallelism > 1, parallelism - 1 worker threads are started once and woken for every phase; the
+// calling thread takes tiles too. Tiles are claimed from one counter and threads wait by parking, so
+// running a phase allocates nothing (no task objects, futures or wait nodes per phase).
+public class StepScheduler implements AutoCloseable {
+    public enum Phase { HEATING, DIFFUSION, BREEDING, AGGREGATION }
+
+    // Work done for one tile of a phase
+    public interface TileTask {
+        void run(int tile);
+    }
+
+    private static final int TILE_CELLS = 1 << 14; // Target number of cells per tile
+
+    private final Thread[] workers; // Empty when everything runs on the calling thread
+    private final long[] phaseNanos = new long[Phase.values().length];
+
+    // The phase being run. A claim holds the phase's tile count in the high half and the next tile in the
+    // low half, so a thread that claims a tile also learns whether it belongs to the phase: a late worker
+    // can only ever take a tile of the current phase, whose task cannot change until that tile is done.
+    private final AtomicLong claims = new AtomicLong();
+    private final AtomicInteger unfinished = new AtomicInteger(); // Tiles of the phase not done yet
+    private volatile TileTask task;
+    private volatile Thread caller;
+    private volatile Throwable failure;
+    private volatile boolean closed = false;
+
+    public StepScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public StepScheduler(int parallelism) {
+        this.workers = new Thread[Math.max(0, parallelism - 1)];
+        for (int w = 0; w < workers.length; w++) {
+            workers[w] = new Thread(this::work, "step-worker-" + w);
+            workers[w].setDaemon(true);
+            workers[w].start();
+        }
+    }
+
+    public int getParallelism() {
+        return workers.length + 1;
+    }
+
+    // Rows per tile. Depends only on the grid width so that tiling, and therefore any per-tile
+    // reduction order, is the same whatever the number of threads.
+    public static int tileRows(int rows, int cols) {
+        return Math.max(1, Math.min(rows, TILE_CELLS / Math.max(1, cols)));
+    }
+
+    public static int tileCount(int rows, int tileRows) {
+        return (rows + tileRows - 1) / tileRows;
+    }
+
+    // Run task for tiles [0, tiles) and wait for all of them
+    public void runPhase(Phase phase, int tiles, TileTask task) {
+        long start = System.nanoTime();
+        if (workers.length == 0 || tiles <= 1) {
+            for (int t = 0; t < tiles; t++) task.run(t);
+        } else {
+            runParallel(tiles, task);
+        }
+        phaseNanos[phase.ordinal()] += System.nanoTime() - start;
+    }
+
+    private void runParallel(int tiles, TileTask task) {
+        this.task = task;
+        caller = Thread.currentThread();
+        unfinished.set(tiles);
+        claims.set((long) tiles << 32); // Opens the phase
+        for (Thread worker : workers) LockSupport.unpark(worker);
+        runTiles();
+        while (unfinished.get() > 0) LockSupport.park(this);
+        Throwable f = failure;
+        if (f != null) {
+            failure = null;
+            if (f instanceof RuntimeException) throw (RuntimeException) f;
+            if (f instanceof Error) throw (Error) f;
+            throw new IllegalStateException(f);
+        }
+    }
+
+    // Run tiles of the current phase until none are left to claim
+    private void runTiles() {
+        while (true) {
+            long claim = claims.getAndIncrement();
+            int tile = (int) claim;
+            if (tile >= (int) (claim >>> 32)) return;
+            try {
+                task.run(tile);
+            } catch (Throwable e) {
+                failure = e;
+            }
+            if (unfinished.decrementAndGet() == 0) LockSupport.unpark(caller);
+        }
+    }
+
+    private void work() {
+        while (!closed) {
+            runTiles();
+            LockSupport.park(this);
+        }
+    }
+
+    // Account for work of a phase done on the calling thread without runPhase
+    public void addPhaseNanos(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    // Time spent in a phase since creation or the last resetTimings()
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public void resetTimings() {
+        Arrays.fill(phaseNanos, 0);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) LockSupport.unpark(worker);
+    }
+}
@@ -0,0 +1,245 @@
+package daisyworld;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Coordinator of a sweep spread over worker processes (SweepWorker), for studies too large for one JVM.
+// Listens on a loopback socket, hands out batches of runs to whichever worker asks, and writes each run's
+// rows to one CSV in the ParameterSweep format once the run is complete. A run whose worker fails or goes
+// silent is handed out again, up to maxAttempts times; rows of an incomplete run are never written.
+// Can start local workers itself, and restarts them if they die while work is left.
+public class SweepCoordinator {
+    private final List<SimulationConfig> runs;
+    private final int steps;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final int timeoutMillis;
+
+    private final Deque<Integer> queue = new ArrayDeque<>(); // Runs waiting for a worker, guarded by this
+    private final int[] attempts;
+    private final List<Integer> failed = new ArrayList<>();
+    private final List<Thread> handlers = new ArrayList<>(); // One per worker connection, guarded by this
+    private int remaining; // Runs neither written nor given up
+    private int connected; // Workers currently talking to a handler
+    private FileService out;
+    private volatile boolean finished = false;
+
+    public SweepCoordinator(List<SimulationConfig> runs, int steps, int batchSize, int maxAttempts, int timeoutSeconds) {
+        this.runs = runs;
+        this.steps = steps;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.timeoutMillis = (int) TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        this.attempts = new int[runs.size()];
+        for (int r = 0; r < runs.size(); r++) queue.add(r);
+        this.remaining = runs.size();
+    }
+
+    // Run the sweep into output with localWorkers worker processes started here, plus any worker that
+    // connects to port (0 picks a free one). Returns the runs that failed every attempt.
+    public List<Integer> run(String output, int localWorkers, int port) throws IOException, InterruptedException {
+        List<Process> workers = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+             FileService csv = new FileService(output, ParameterSweep.SWEEP_HEADER)) {
+            out = csv;
+            out.writeCSVHeader();
+            System.out.printf("Coordinator on 127.0.0.1:%d, %d runs%n", server.getLocalPort(), runs.size());
+            Thread acceptor = new Thread(() -> accept(server), "sweep-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            int restarts = localWorkers * maxAttempts; // Enough to replace every worker once per attempt
+            for (int w = 0; w < localWorkers; w++) {
+                workers.add(startWorker(server.getLocalPort(), w));
+            }
+            synchronized (this) {
+                while (remaining > 0) {
+                    wait(1000);
+                    boolean anyAlive = false;
+                    for (int w = 0; w < workers.size() && remaining > 0; w++) {
+                        if (!workers.get(w).isAlive() && restarts > 0) {
+                            System.err.printf("Worker %d exited with %d, restarting it%n", w, workers.get(w).exitValue());
+                            workers.set(w, startWorker(server.getLocalPort(), w));
+                            restarts--;
+                        }
+                        anyAlive |= workers.get(w).isAlive();
+                    }
+                    // Local workers keep dying: with none left to run them, the queued runs can only fail.
+                    // (Without local workers the coordinator waits for workers started by hand.)
+                    if (localWorkers > 0 && restarts == 0 && !anyAlive && connected == 0 && remaining > 0) {
+                        System.err.printf("No workers left, giving up on %d runs%n", queue.size());
+                        failed.addAll(queue);
+                        remaining -= queue.size();
+                        queue.clear();
+                    }
+                }
+                finished = true;
+                notifyAll();
+            }
+            // Let the handlers of connected workers answer their last READY with BYE before the sockets go
+            for (Thread handler : handlerThreads()) handler.join(TimeUnit.SECONDS.toMillis(10));
+        } finally {
+            for (Process worker : workers) {
+                if (!worker.waitFor(10, TimeUnit.SECONDS)) worker.destroy();
+            }
+        }
+        return failed;
+    }
+
+    private Process startWorker(int port, int index) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), SweepWorker.class.getName(),
+                "--connect", "127.0.0.1:" + port, "--name", "local-" + index)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .directory(new File(System.getProperty("user.dir")))
+                .start();
+    }
+
+    private void accept(ServerSocket server) {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread handler = new Thread(() -> serve(socket), "sweep-worker-" + socket.getPort());
+                handler.setDaemon(true);
+                synchronized (this) {
+                    handlers.add(handler);
+                }
+                handler.start();
+            } catch (IOException e) {
+                if (!server.isClosed()) System.err.println("Accepting a worker failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private synchronized List<Thread> handlerThreads() {
+        return new ArrayList<>(handlers);
+    }
+
+    // Talk to one worker until there is no work left or it fails
+    private void serve(Socket socket) {
+        synchronized (this) {
+            connected++;
+        }
+        try {
+            talkTo(socket);
+        } finally {
+            synchronized (this) {
+                connected--;
+                notifyAll();
+            }
+        }
+    }
+
+    private void talkTo(Socket socket) {
+        String name = socket.getRemoteSocketAddress().toString();
+        List<Integer> batch = new ArrayList<>();
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             Writer toWorker = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+            s.setSoTimeout(timeoutMillis);
+            String hello = readLine(in);
+            if (hello.startsWith(SweepProtocol.HELLO + ' ')) name = hello.substring(SweepProtocol.HELLO.length() + 1);
+            while (true) {
+                if (!readLine(in).equals(SweepProtocol.READY)) throw new IOException("Protocol error");
+                takeBatch(batch);
+                if (batch.isEmpty()) {
+                    toWorker.write(SweepProtocol.BYE + '\n');
+                    toWorker.flush();
+                    return;
+                }
+                for (int run : batch) {
+                    toWorker.write(SweepProtocol.encode(run, steps, runs.get(run)));
+                    toWorker.write('\n');
+                }
+                toWorker.write(SweepProtocol.END + '\n');
+                toWorker.flush();
+                while (!batch.isEmpty()) {
+                    receiveRun(in, batch.remove(0), name);
+                }
+            }
+        } catch (IOException e) {
+            System.err.printf("Lost worker %s: %s%n", name, e.getMessage());
+            for (int run : batch) retry(run, "worker " + name + " lost");
+        }
+    }
+
+    // Rows of one run up to its DONE, written out as a whole; a FAIL puts the run back in the queue
+    private void receiveRun(BufferedReader in, int run, String name) throws IOException {
+        StringBuilder rows = new StringBuilder();
+        try {
+            while (true) {
+                String line = readLine(in);
+                if (line.startsWith(SweepProtocol.DONE + ' ')) {
+                    if (Integer.parseInt(line.substring(SweepProtocol.DONE.length() + 1)) != run)
+                        throw new IOException("Expected run " + run + ", got " + line);
+                    complete(run, rows);
+                    return;
+                }
+                if (line.startsWith(SweepProtocol.FAIL + ' ')) {
+                    retry(run, "worker " + name + ": " + line);
+                    return;
+                }
+                rows.append(line).append('\n');
+            }
+        } catch (IOException e) {
+            retry(run, "worker " + name + " lost");
+            throw e;
+        }
+    }
+
+    private static String readLine(BufferedReader in) throws IOException {
+        String line = in.readLine();
+        if (line == null) throw new IOException("Connection closed");
+        return line;
+    }
+
+    // Up to batchSize queued runs; waits while runs are out with other workers that might still fail
+    private synchronized void takeBatch(List<Integer> batch) {
+        batch.clear();
+        while (queue.isEmpty() && remaining > 0 && !finished) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        while (batch.size() < batchSize && !queue.isEmpty()) batch.add(queue.poll());
+    }
+
+    private synchronized void complete(int run, CharSequence rows) {
+        out.writeLines(rows);
+        remaining--;
+        System.out.printf("Run %d finished (%d/%d)%n", run, runs.size() - remaining, runs.size());
+        notifyAll();
+    }
+
+    private synchronized void retry(int run, String reason) {
+        attempts[run]++;
+        if (attempts[run] < maxAttempts) {
+            System.err.printf("Run %d failed (%s), retrying%n", run, reason);
+            queue.addFirst(run);
+        } else {
+            System.err.printf("Run %d failed (%s), giving up after %d attempts%n", run, reason, attempts[run]);
+            failed.add(run);
+            remaining--;
+        }
+        notifyAll();
+    }
+}
@@ -0,0 +1,65 @@
+package daisyworld;
+
+// Line protocol between SweepCoordinator and SweepWorker over a local socket (UTF-8, one message per line).
+//
+// worker -> coordinator   HELLO <name>           once, after connecting
+//                         READY                  asks for a batch
+//                         <csv row>              result rows of the job being run, in SWEEP_HEADER format
+//                         DONE <run>             all rows of the run have been sent
+//                         FAIL <run> <message>   the run threw; its rows so far are dropped
+// coordinator -> worker   JOB <fields>           one per job of the batch, see encode
+//                         END                    end of the batch
+//                         BYE                    no work left, the worker exits
+final class SweepProtocol {
+    static final String HELLO = "HELLO";
+    static final String READY = "READY";
+    static final String DONE = "DONE";
+    static final String FAIL = "FAIL";
+    static final String JOB = "JOB";
+    static final String END = "END";
+    static final String BYE = "BYE";
+
+    private SweepProtocol() {}
+
+    // Everything a worker needs to run one world. Doubles are written with Double.toString, which reads
+    // back exactly, so a job gives the same rows whichever process runs it.
+    static String encode(int run, int steps, SimulationConfig c) {
+        return JOB + ' ' + run + ' ' + steps + ' ' + c.rows + ' ' + c.cols + ' ' + c.maxAge + ' ' + c.diffuseFactor
+                + ' ' + c.activeSet + ' ' + c.solarLuminosity + ' ' + c.albedoOfBlacks + ' ' + c.albedoOfWhites
+                + ' ' + c.albedoOfSurface + ' ' + c.percentageOfBlacks + ' ' + c.percentageOfWhites + ' ' + c.seed
+                + ' ' + c.boundary;
+    }
+
+    // A decoded JOB line
+    static final class Job {
+        final int run;
+        final int steps;
+        final SimulationConfig config;
+
+        Job(int run, int steps, SimulationConfig config) {
+            this.run = run;
+            this.steps = steps;
+            this.config = config;
+        }
+    }
+
+    static Job decode(String line) {
+        String[] f = line.split(" ");
+        if (f.length != 16 || !f[0].equals(JOB)) throw new IllegalArgumentException("Not a job: " + line);
+        SimulationConfig c = new SimulationConfig();
+        c.rows = Integer.parseInt(f[3]);
+        c.cols = Integer.parseInt(f[4]);
+        c.maxAge = Integer.parseInt(f[5]);
+        c.diffuseFactor = Double.parseDouble(f[6]);
+        c.activeSet = Boolean.parseBoolean(f[7]);
+        c.solarLuminosity = Double.parseDouble(f[8]);
+        c.albedoOfBlacks = Double.parseDouble(f[9]);
+        c.albedoOfWhites = Double.parseDouble(f[10]);
+        c.albedoOfSurface = Double.parseDouble(f[11]);
+        c.percentageOfBlacks = Integer.parseInt(f[12]);
+        c.percentageOfWhites = Integer.parseInt(f[13]);
+        c.seed = Long.parseLong(f[14]);
+        c.boundary = Boundary.parse(f[15]);
+        return new Job(Integer.parseInt(f[1]), Integer.parseInt(f[2]), c);
+    }
+}
@@ -0,0 +1,104 @@
+package daisyworld;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+// Worker process of a distributed sweep: connects to a SweepCoordinator, runs the batches it is given with
+// the same step loop as ParameterSweep, and streams the rows back. Exits when the coordinator says BYE or
+// goes away.
+//
+// Usage: java daisyworld.SweepWorker --connect 127.0.0.1:PORT [--name NAME] [--crash-after-jobs N]
+// --crash-after-jobs makes the process die abruptly after N jobs, to try out the coordinator's retries.
+public class SweepWorker {
+
+    public static void main(String[] args) {
+        String connect = null;
+        String name = "worker-" + ProcessHandle.current().pid();
+        int crashAfterJobs = -1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--connect":
+                    connect = args[++i];
+                    break;
+                case "--name":
+                    name = args[++i];
+                    break;
+                case "--crash-after-jobs":
+                    crashAfterJobs = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    connect = null;
+                    i = args.length;
+            }
+        }
+        if (connect == null || !connect.contains(":")) {
+            System.err.println("Usage: java daisyworld.SweepWorker --connect HOST:PORT [--name NAME] [--crash-after-jobs N]");
+            System.exit(1);
+        }
+        String host = connect.substring(0, connect.lastIndexOf(':'));
+        int port = Integer.parseInt(connect.substring(connect.lastIndexOf(':') + 1));
+        try {
+            run(host, port, name, crashAfterJobs);
+        } catch (IOException e) {
+            System.err.println(name + ": lost the coordinator: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    static void run(String host, int port, String name, int crashAfterJobs) throws IOException {
+        try (Socket socket = new Socket(host, port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            send(out, SweepProtocol.HELLO + ' ' + name);
+            int jobsDone = 0;
+            while (true) {
+                send(out, SweepProtocol.READY);
+                String line = in.readLine();
+                if (line == null || line.equals(SweepProtocol.BYE)) return;
+                while (!line.equals(SweepProtocol.END)) {
+                    SweepProtocol.Job job = SweepProtocol.decode(line);
+                    if (jobsDone == crashAfterJobs) {
+                        System.err.println(name + ": crashing on purpose before run " + job.run);
+                        Runtime.getRuntime().halt(3);
+                    }
+                    runJob(job, out);
+                    jobsDone++;
+                    line = in.readLine();
+                    if (line == null) return;
+                }
+            }
+        }
+    }
+
+    private static void runJob(SweepProtocol.Job job, Writer out) throws IOException {
+        try {
+            ParameterSweep.runWorld(job.run, job.config, job.steps, rows -> {
+                try {
+                    out.append(rows);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause(); // The coordinator is gone
+        } catch (RuntimeException e) {
+            send(out, SweepProtocol.FAIL + ' ' + job.run + ' ' + e.toString().replace('\n', ' '));
+            return;
+        }
+        send(out, SweepProtocol.DONE + ' ' + job.run);
+    }
+
+    private static void send(Writer out, String message) throws IOException {
+        out.write(message);
+        out.write('\n');
+        out.flush();
+    }
+}
@@ -0,0 +1,51 @@
+package daisyworld;
+
+// The per-cell loops of the heating and diffusion phases. SCALAR is the plain Java version over any
+// GridStorage; the vector version (VectorTemperatureKernel, in src-vector/) works on the arrays of a Grid, is
+// only compiled with -Pvector and only usable when the JVM runs with --add-modules jdk.incubator.vector, so
+// it is looked up by name and falls back to SCALAR.
+interface TemperatureKernel {
+    String VECTOR_CLASS = "daisyworld.VectorTemperatureKernel";
+
+    // Heat cells [from, to): temperature = (temperature + heating of the cell's albedo) / 2
+    void heat(GridStorage grid, double heatingSurface, double heatingBlack, double heatingWhite, int from, int to);
+
+    // Diffuse the rows [fromRow, toRow) of a tile into the write buffer, with the tile's exchanged halos, and
+    // aggregate the result into sums[offset..], as DiffusionKernel.diffuseAndSumRows
+    void diffuse(GridStorage grid, double df, int fromRow, int toRow, TileHalos halos, int tile, double[] sums,
+                 int offset);
+
+    String name();
+
+    TemperatureKernel SCALAR = new TemperatureKernel() {
+        @Override
+        public void heat(GridStorage grid, double heatingSurface, double heatingBlack, double heatingWhite,
+                         int from, int to) {
+            for (int i = from; i < to; i++) {
+                int color = grid.getColor(i);
+                double heating = color == Grid.NONE ? heatingSurface : (color == Grid.BLACK ? heatingBlack : heatingWhite);
+                grid.setTemperature(i, (grid.getTemperature(i) + heating) / 2);
+            }
+        }
+
+        @Override
+        public void diffuse(GridStorage grid, double df, int fromRow, int toRow, TileHalos halos, int tile,
+                            double[] sums, int offset) {
+            DiffusionKernel.diffuseAndSumRows(grid, df, fromRow, toRow, halos, tile, sums, offset);
+        }
+
+        @Override
+        public String name() {return "scalar";}
+    };
+
+    // The vector kernel if it can be loaded, otherwise SCALAR with a warning
+    static TemperatureKernel vector() {
+        try {
+            return (TemperatureKernel) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.err.println("Vector kernel unavailable (build with -Pvector and run with"
+                    + " --add-modules jdk.incubator.vector), using the scalar kernel: " + e);
+            return SCALAR;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package daisyworld;
+
+// Copies of the rows just above and below each row tile, exchanged before the tile is diffused: the edge
+// row of the neighbouring tile, the opposite edge row of the grid on a torus, or zeros past a closed edge
+// (a missing neighbour gives no heat). A tile's diffusion then reads only its own rows and its two halo
+// rows, with no edge tests per cell, so tiles depend on each other only through the exchange.
+final class TileHalos {
+    final int cols;
+    final boolean wrap;  // Torus: the first and last column are neighbours too
+    final double[] above; // cols values per tile
+    final double[] below;
+    private final int rows;
+
+    TileHalos(int rows, int cols, int tiles, Boundary boundary) {
+        this.rows = rows;
+        this.cols = cols;
+        this.wrap = boundary == Boundary.TORUS;
+        this.above = new double[tiles * cols];
+        this.below = new double[tiles * cols];
+    }
+
+    // First halo value of a tile in above and below
+    int offset(int tile) {return tile * cols;}
+
+    // Take the halo rows of the tile of rows [fromRow, toRow) from the current temperatures. Only reads
+    // other tiles, which are not written while diffusing (it writes to the other buffer), so each tile can
+    // exchange its own halos at the start of its diffusion task.
+    void exchange(GridStorage grid, int tile, int fromRow, int toRow) {
+        int upRow = rowAbove(fromRow);
+        int downRow = rowBelow(toRow - 1);
+        for (int col = 0; col < cols; col++) {
+            if (upRow >= 0) above[offset(tile) + col] = grid.getTemperature(upRow * cols + col);
+            if (downRow >= 0) below[offset(tile) + col] = grid.getTemperature(downRow * cols + col);
+        }
+    }
+
+    // Row above/below a row, -1 past a closed edge, whose halo stays zero
+    private int rowAbove(int row) {
+        return row > 0 ? row - 1 : (wrap ? rows - 1 : -1);
+    }
+
+    private int rowBelow(int row) {
+        return row < rows - 1 ? row + 1 : (wrap ? 0 : -1);
+    }
+}
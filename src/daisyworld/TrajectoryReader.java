@@ -0,0 +1,162 @@
+package daisyworld;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Reads a trajectory written by BinaryTrajectoryWriter through memory-mapped files, so any step can be
+// looked up without parsing the ones before it. Can also convert it back to the CSV format of FileService.
+// Records are mapped in segments of SEGMENT_RECORDS whole records, since a single buffer holds at most 2 GiB.
+public class TrajectoryReader implements AutoCloseable {
+    static final int SEGMENT_RECORDS = (1 << 30) / BinaryTrajectoryWriter.RECORD_BYTES; // About 1 GiB per segment
+
+    private final FileChannel recordChannel;
+    private final MappedByteBuffer[] records;
+    private final FileChannel gridChannel; // null when the run had no snapshots
+    private final int rows;
+    private final int cols;
+    private final int snapshotEvery;
+    private final int stepCount;
+    private final int snapshotCount;
+
+    public TrajectoryReader(String path) throws IOException {
+        recordChannel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        long size = recordChannel.size();
+        if (size < BinaryTrajectoryWriter.HEADER_BYTES)
+            throw new IOException("Not a daisy world trajectory: " + path);
+        MappedByteBuffer header = map(recordChannel, 0, BinaryTrajectoryWriter.HEADER_BYTES);
+        if (header.getInt(0) != BinaryTrajectoryWriter.MAGIC)
+            throw new IOException("Not a daisy world trajectory: " + path);
+        if (header.getInt(4) != BinaryTrajectoryWriter.VERSION)
+            throw new IOException("Unsupported trajectory version " + header.getInt(4) + ": " + path);
+        rows = header.getInt(8);
+        cols = header.getInt(12);
+        snapshotEvery = header.getInt(16);
+        long recordCount = (size - BinaryTrajectoryWriter.HEADER_BYTES) / BinaryTrajectoryWriter.RECORD_BYTES;
+        if (recordCount > Integer.MAX_VALUE)
+            throw new IOException("Too many records in " + path + ": " + recordCount);
+        stepCount = (int) recordCount;
+        records = new MappedByteBuffer[(stepCount + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS];
+        for (int s = 0; s < records.length; s++) {
+            int count = Math.min(SEGMENT_RECORDS, stepCount - s * SEGMENT_RECORDS);
+            records[s] = map(recordChannel, BinaryTrajectoryWriter.HEADER_BYTES
+                    + (long) s * SEGMENT_RECORDS * BinaryTrajectoryWriter.RECORD_BYTES, count * BinaryTrajectoryWriter.RECORD_BYTES);
+        }
+
+        Path gridPath = Paths.get(path + BinaryTrajectoryWriter.GRID_SUFFIX);
+        if (snapshotEvery > 0 && Files.exists(gridPath)) {
+            gridChannel = FileChannel.open(gridPath, StandardOpenOption.READ);
+            snapshotCount = (int) ((gridChannel.size() - BinaryTrajectoryWriter.HEADER_BYTES)
+                    / BinaryTrajectoryWriter.snapshotBytes(rows, cols));
+        } else {
+            gridChannel = null;
+            snapshotCount = 0;
+        }
+    }
+
+    // Getters for the run
+    public int getRows() {return rows;}
+    public int getCols() {return cols;}
+    public int getSnapshotEvery() {return snapshotEvery;}
+    public int getStepCount() {return stepCount;}      // Number of step records
+    public int getSnapshotCount() {return snapshotCount;}
+
+    // Getters for the k-th record
+    public int getStep(int k) {return segment(k).getInt(offset(k));}
+    public int getNumBlacks(int k) {return segment(k).getInt(offset(k) + 4);}
+    public int getNumWhites(int k) {return segment(k).getInt(offset(k) + 8);}
+    public double getGlobalTemperature(int k) {return segment(k).getDouble(offset(k) + 16);}
+    public double getLuminosity(int k) {return segment(k).getDouble(offset(k) + 24);}
+    public double getAlbedoBlack(int k) {return segment(k).getDouble(offset(k) + 32);}
+    public double getAlbedoWhite(int k) {return segment(k).getDouble(offset(k) + 40);}
+    public double getAlbedoSurface(int k) {return segment(k).getDouble(offset(k) + 48);}
+
+    // The segment holding the k-th record, and the record's position in it
+    private MappedByteBuffer segment(int k) {
+        if (k < 0 || k >= stepCount) throw new IndexOutOfBoundsException("Record " + k + " of " + stepCount);
+        return records[k / SEGMENT_RECORDS];
+    }
+
+    private static int offset(int k) {
+        return k % SEGMENT_RECORDS * BinaryTrajectoryWriter.RECORD_BYTES;
+    }
+
+    // Index of the record for a step number, or -1. Records are written in increasing step order.
+    public int findStep(int step) {
+        int lo = 0;
+        int hi = stepCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int s = getStep(mid);
+            if (s < step) lo = mid + 1;
+            else if (s > step) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    // Copies the k-th grid snapshot into the given arrays (rows*cols each) and returns its step number.
+    // Mapped in segments of OffHeapGrid.SEGMENT_CELLS cells, since a single buffer holds at most 2 GiB.
+    public int readSnapshot(int k, double[] temperature, byte[] color, byte[] age) throws IOException {
+        if (k < 0 || k >= snapshotCount) throw new IndexOutOfBoundsException("Snapshot " + k + " of " + snapshotCount);
+        long position = BinaryTrajectoryWriter.HEADER_BYTES + k * BinaryTrajectoryWriter.snapshotBytes(rows, cols);
+        int step = map(gridChannel, position, BinaryTrajectoryWriter.SNAPSHOT_HEADER_BYTES).getInt(0);
+        int cells = rows * cols;
+        position += BinaryTrajectoryWriter.SNAPSHOT_HEADER_BYTES;
+        for (int from = 0; from < cells; from += OffHeapGrid.SEGMENT_CELLS) {
+            int count = Math.min(OffHeapGrid.SEGMENT_CELLS, cells - from);
+            map(gridChannel, position + (long) from * Double.BYTES, count * Double.BYTES).asDoubleBuffer().get(temperature, from, count);
+        }
+        position += (long) cells * Double.BYTES;
+        for (int from = 0; from < cells; from += OffHeapGrid.SEGMENT_CELLS) {
+            int count = Math.min(OffHeapGrid.SEGMENT_CELLS, cells - from);
+            map(gridChannel, position + from, count).get(color, from, count);
+            map(gridChannel, position + cells + from, count).get(age, from, count);
+        }
+        return step;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, int bytes) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    // Write the step records out in the CSV format of FileService
+    public void toCsv(String csvPath) {
+        try (FileService fileService = new FileService(csvPath)) {
+            fileService.writeCSVHeader();
+            for (int k = 0; k < stepCount; k++) {
+                fileService.writeToCSV(getStep(k), getGlobalTemperature(k), getNumBlacks(k), getNumWhites(k),
+                        getLuminosity(k), getAlbedoBlack(k), getAlbedoWhite(k), getAlbedoSurface(k));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        recordChannel.close();
+        if (gridChannel != null) gridChannel.close();
+    }
+
+    // Usage: java daisyworld.TrajectoryReader <trajectory.bin> [output.csv]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java daisyworld.TrajectoryReader <trajectory.bin> [output.csv]");
+            System.exit(1);
+        }
+        try (TrajectoryReader reader = new TrajectoryReader(args[0])) {
+            System.out.printf("%dx%d grid, %d steps, %d snapshots%n",
+                    reader.getRows(), reader.getCols(), reader.getStepCount(), reader.getSnapshotCount());
+            if (args.length > 1) {
+                reader.toCsv(args[1]);
+                System.out.println("Wrote " + args[1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package daisyworld;
+
+import java.io.IOException;
+
+// Destination for the per-step output of a run (CSV or binary)
+public interface TrajectorySink extends AutoCloseable {
+    void writeHeader(Simulation simulation);
+    void writeStep(int stepNumber, Simulation simulation); // Called after setup (step 0) and after every step
+
+    // Instead of writeHeader for a run resumed at step: continue its existing output, keeping what was
+    // written before that step and dropping anything from it on (a crashed run may have got further than
+    // its last checkpoint). Fails rather than touch an output that is not from a run like this one.
+    void resume(int step, Simulation simulation) throws IOException;
+    void flush();
+
+    // Like flush() split in two, so that another thread can do the waiting: mark() sends everything written
+    // so far on its way to the file, and awaitWritten(mark), from any thread, waits until that much is there.
+    // Sinks that write synchronously are done after mark().
+    default long mark() {
+        flush();
+        return 0;
+    }
+
+    default void awaitWritten(long mark) {}
+
+    // Output waiting to be written by a background thread, 0 for sinks that write synchronously
+    default int getQueueDepth() {return 0;}
+
+    @Override
+    void close();
+}